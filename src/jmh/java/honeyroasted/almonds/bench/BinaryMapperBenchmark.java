@@ -0,0 +1,56 @@
+package honeyroasted.almonds.bench;
+
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryMapperBenchmark {
+    @Param({"16", "256", "2048"})
+    public int pairs;
+
+    @Param({"false", "true"})
+    public boolean keyed;
+
+    private Workloads.ForbidMapper mapper;
+    private ConstraintTree tree;
+    private ConstraintBranch branch;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        this.mapper = new Workloads.ForbidMapper(this.keyed);
+        this.tree = new ConstraintTree();
+        this.branch = new ConstraintBranch(this.tree);
+        for (int i = 0; i < this.pairs; i++) {
+            this.branch.add(new Workloads.Assign("v" + i, i));
+            this.branch.add(new Workloads.Forbid("v" + i, i + 1));
+        }
+        this.branch.executeChanges();
+    }
+
+    @Benchmark
+    public ConstraintBranch enumeratePairs() {
+        //The mapper writes to the branch it visits, a copy only forks the layers so each call starts from the same state
+        ConstraintBranch branch = this.branch.copy(this.tree);
+        this.mapper.accept(branch);
+        return branch;
+    }
+}
@@ -0,0 +1,77 @@
+package honeyroasted.almonds.bench;
+
+import honeyroasted.almonds.Constraint;
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintTree;
+import honeyroasted.collect.property.PropertySet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BranchBenchmark {
+    @Param({"16", "256", "4096"})
+    public int constraints;
+
+    @Param({"2", "8"})
+    public int alternatives;
+
+    private ConstraintTree tree;
+    private ConstraintBranch branch;
+    private List<ConstraintBranch.Snapshot> snapshots;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        this.snapshots = new ArrayList<>();
+        for (int i = 0; i < this.alternatives; i++) {
+            this.snapshots.add(new ConstraintBranch.Snapshot(new PropertySet(), Map.of(new Workloads.Assign("x", i), Constraint.Status.UNKNOWN)));
+        }
+
+        this.tree = new ConstraintTree();
+        this.branch = new ConstraintBranch(this.tree);
+        for (int i = 0; i < this.constraints; i++) {
+            this.branch.add(new Workloads.Assign("v" + i, i));
+        }
+        this.branch.executeChanges();
+    }
+
+    @Benchmark
+    public ConstraintBranch copy() {
+        return this.branch.copy();
+    }
+
+    //Diverging changes the branch, so both diverge benchmarks work on a copy and include the cost measured by copy()
+    @Benchmark
+    public List<ConstraintBranch> divergeBranches() {
+        ConstraintBranch branch = this.branch.copy(this.tree);
+        branch.divergeBranches(this.snapshots);
+        return branch.divergence();
+    }
+
+    @Benchmark
+    public List<ConstraintBranch> divergeTwice() {
+        ConstraintBranch branch = this.branch.copy(this.tree);
+        branch.divergeBranches(this.snapshots);
+        branch.divergeBranches(this.snapshots);
+        return branch.divergence();
+    }
+}
@@ -0,0 +1,59 @@
+package honeyroasted.almonds.bench;
+
+import honeyroasted.almonds.CompiledConstraintSolver;
+import honeyroasted.almonds.Constraint;
+import honeyroasted.almonds.ConstraintSolver;
+import honeyroasted.almonds.ConstraintTree;
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+    public enum Workload {
+        WIDE,
+        DEEP
+    }
+
+    @Param
+    public ConstraintMapperApplier.Type type;
+
+    @Param
+    public Workload workload;
+
+    private CompiledConstraintSolver solver;
+    private List<Constraint> constraints;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.solver = new ConstraintSolver(List.of(ConstraintMapperApplier.of(Workloads.mappers(), this.type)))
+                .compile();
+        this.constraints = switch (this.workload) {
+            case WIDE -> Workloads.wide(4, 4);
+            case DEEP -> Workloads.deep(16, 128);
+        };
+    }
+
+    @Benchmark
+    public ConstraintTree solve() {
+        return this.solver.solve(this.constraints);
+    }
+}
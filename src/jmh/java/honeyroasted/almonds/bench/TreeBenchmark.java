@@ -0,0 +1,74 @@
+package honeyroasted.almonds.bench;
+
+import honeyroasted.almonds.Constraint;
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmark {
+    @Param({"64", "1024", "16384"})
+    public int branches;
+
+    @Param({"8", "64"})
+    public int constraints;
+
+    private ConstraintTree tree;
+    private List<ConstraintBranch> pending;
+    private List<Constraint> assignments;
+    private boolean assigned;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.pending = new ArrayList<>();
+        this.assignments = new ArrayList<>();
+        this.tree = new ConstraintTree();
+        for (int b = 0; b < this.branches; b++) {
+            ConstraintBranch branch = new ConstraintBranch(this.tree);
+            branch.add(new Workloads.Choice("b" + b, this.constraints));
+            for (int i = 0; i < this.constraints; i++) {
+                branch.add(new Workloads.Assign("b" + b, i));
+            }
+            branch.executeChanges();
+            this.tree.addBranch(branch);
+
+            //Half of the branches have pending work when the round ends
+            if (b % 2 == 0) {
+                this.pending.add(branch);
+                this.assignments.add(new Workloads.Assign("b" + b, 0));
+            }
+        }
+        this.tree.executeChanges();
+    }
+
+    @Benchmark
+    public boolean executeChanges() {
+        //Flipping the same assignment every call gives each round the same amount of work without rebuilding the tree
+        this.assigned = !this.assigned;
+        Constraint.Status status = this.assigned ? Constraint.Status.TRUE : Constraint.Status.UNKNOWN;
+        for (int b = 0; b < this.pending.size(); b++) {
+            this.pending.get(b).set(this.assignments.get(b), status);
+        }
+        return this.tree.executeChanges();
+    }
+}
@@ -0,0 +1,161 @@
+package honeyroasted.almonds.bench;
+
+import honeyroasted.almonds.Constraint;
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintMapper;
+import honeyroasted.collect.property.PropertySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public final class Workloads {
+
+    private Workloads() {
+    }
+
+    public static List<ConstraintMapper> mappers() {
+        return List.of(new ChoiceMapper(), new AssignMapper(), new ForbidMapper(), new ChainMapper());
+    }
+
+    //Every variable picks one of domain values, a forbidden value per variable cuts one alternative
+    public static List<Constraint> wide(int vars, int domain) {
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < vars; i++) {
+            constraints.add(new Choice("v" + i, domain));
+            constraints.add(new Forbid("v" + i, i % domain));
+        }
+        return constraints;
+    }
+
+    //Long chains of single step reductions without any divergence
+    public static List<Constraint> deep(int chains, int depth) {
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < chains; i++) {
+            constraints.add(new Chain("c" + i, depth));
+        }
+        return constraints;
+    }
+
+    public static class Choice extends Constraint.Binary<String, Integer> {
+        public Choice(String variable, Integer domain) {
+            super(variable, domain);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " in 0.." + this.right();
+        }
+    }
+
+    public static class Assign extends Constraint.Binary<String, Integer> {
+        public Assign(String variable, Integer value) {
+            super(variable, value);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " = " + this.right();
+        }
+    }
+
+    public static class Forbid extends Constraint.Binary<String, Integer> {
+        public Forbid(String variable, Integer value) {
+            super(variable, value);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " != " + this.right();
+        }
+    }
+
+    public static class Chain extends Constraint.Binary<String, Integer> {
+        public Chain(String name, Integer remaining) {
+            super(name, remaining);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " after " + this.right();
+        }
+    }
+
+    public static class ChoiceMapper extends ConstraintMapper.Unary<Choice> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Choice constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Choice constraint, Constraint.Status status) {
+            List<Map<Constraint, Constraint.Status>> options = new ArrayList<>();
+            for (int i = 0; i < constraint.right(); i++) {
+                options.add(Map.of(new Assign(constraint.left(), i), Constraint.Status.UNKNOWN));
+            }
+            branch.set(constraint, Constraint.Status.TRUE);
+            branch.diverge(options);
+        }
+    }
+
+    public static class AssignMapper extends ConstraintMapper.Unary<Assign> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign constraint, Constraint.Status status) {
+            branch.set(constraint, Constraint.Status.TRUE);
+        }
+    }
+
+    public static class ForbidMapper extends ConstraintMapper.Binary<Assign, Forbid> {
+        private final boolean keyed;
+
+        public ForbidMapper(boolean keyed) {
+            this.keyed = keyed;
+        }
+
+        public ForbidMapper() {
+            this(true);
+        }
+
+        @Override
+        protected Object leftKey(Assign constraint) {
+            return this.keyed ? constraint.left() : ANY_KEY;
+        }
+
+        @Override
+        protected Object rightKey(Forbid constraint) {
+            return this.keyed ? constraint.left() : ANY_KEY;
+        }
+
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign leftConstraint, Constraint.Status leftStatus, Forbid rightConstraint, Constraint.Status rightStatus) {
+            return rightStatus.isUnknown() && leftConstraint.left().equals(rightConstraint.left());
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign leftConstraint, Constraint.Status leftStatus, Forbid rightConstraint, Constraint.Status rightStatus) {
+            branch.set(rightConstraint, Constraint.Status.known(!leftConstraint.right().equals(rightConstraint.right())));
+        }
+    }
+
+    public static class ChainMapper extends ConstraintMapper.Unary<Chain> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Chain constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Chain constraint, Constraint.Status status) {
+            if (constraint.right() == 0) {
+                branch.set(constraint, Constraint.Status.TRUE);
+            } else {
+                branch.drop(constraint);
+                branch.add(new Chain(constraint.left(), constraint.right() - 1));
+            }
+        }
+    }
+}
@@ -1,26 +1,114 @@
 package honeyroasted.almonds;
 
 import java.util.Arrays;
-import java.util.Comparator;
 
-public record BranchPriority(int... priority) implements Comparable<BranchPriority> {
+public final class BranchPriority implements Comparable<BranchPriority> {
+    private static final BranchPriority root = new BranchPriority(null, 0, 0);
+
+    //The first PACKED components are also kept in a single long, so most comparisons never walk the chain
+    private static final int PACKED = 4;
+    private static final int PACKED_BITS = Long.SIZE / PACKED;
+    private static final int PACKED_MAX = (1 << PACKED_BITS - 1) - 1;
+
+    private final BranchPriority parent;
+    private final int value;
+    private final int depth;
+    private final int hash;
+    private final long packed;
+    private final boolean compact;
+
+    public BranchPriority(int... priority) {
+        this(priority.length == 0 ? null : chain(priority, priority.length - 1),
+                priority.length == 0 ? 0 : priority[priority.length - 1],
+                priority.length);
+    }
+
+    private BranchPriority(BranchPriority parent, int value, int depth) {
+        this.parent = parent;
+        this.value = value;
+        this.depth = depth;
+
+        if (depth == 0) {
+            this.hash = 1;
+            this.packed = 0;
+            this.compact = true;
+        } else {
+            this.hash = 31 * parent.hash + value;
+            if (depth <= PACKED) {
+                //Components are stored offset so an absent component (0) sorts before any present one
+                boolean fits = value >= -PACKED_MAX && value <= PACKED_MAX;
+                this.packed = fits ? parent.packed | (long) (value + PACKED_MAX + 1) << (PACKED_BITS * (PACKED - depth)) : 0;
+                this.compact = parent.compact && fits;
+            } else {
+                this.packed = parent.packed;
+                this.compact = parent.compact;
+            }
+        }
+    }
+
+    private static BranchPriority chain(int[] priority, int length) {
+        BranchPriority node = root;
+        for (int i = 0; i < length; i++) {
+            node = node.sub(priority[i]);
+        }
+        return node;
+    }
+
+    public static BranchPriority root() {
+        return root;
+    }
 
     public static int compare(BranchPriority o1, BranchPriority o2) {
-        for (int i = 0; i < o1.priority.length && i < o2.priority.length; i++) {
-            int cmp = Integer.compare(o1.priority[i], o2.priority[i]);
-            if (cmp != 0) {
+        if (o1 == o2) return 0;
+
+        if (o1.compact && o2.compact) {
+            int cmp = Long.compareUnsigned(o1.packed, o2.packed);
+            if (cmp != 0 || (o1.depth <= PACKED && o2.depth <= PACKED)) {
                 return cmp;
             }
         }
 
-        return Integer.compare(o1.priority.length, o2.priority.length);
+        BranchPriority a = o1;
+        BranchPriority b = o2;
+        while (a.depth > b.depth) a = a.parent;
+        while (b.depth > a.depth) b = b.parent;
+
+        //Walk both up to their common ancestor, the last difference seen is the first one from the root
+        int cmp = 0;
+        while (a != b && a.depth > 0) {
+            int c = Integer.compare(a.value, b.value);
+            if (c != 0) cmp = c;
+            a = a.parent;
+            b = b.parent;
+        }
+
+        return cmp != 0 ? cmp : Integer.compare(o1.depth, o2.depth);
+    }
+
+    public int depth() {
+        return this.depth;
+    }
+
+    public int[] priority() {
+        int[] priority = new int[this.depth];
+        BranchPriority curr = this;
+        for (int i = this.depth - 1; i >= 0; i--) {
+            priority[i] = curr.value;
+            curr = curr.parent;
+        }
+        return priority;
+    }
+
+    public BranchPriority sub(int next) {
+        return new BranchPriority(this, next, this.depth + 1);
     }
 
     public BranchPriority sub(int... next) {
-        int[] newPrio = new int[priority.length + next.length];
-        System.arraycopy(this.priority, 0, newPrio, 0, this.priority.length);
-        System.arraycopy(next, 0, newPrio, this.priority.length, next.length);
-        return new BranchPriority(newPrio);
+        BranchPriority node = this;
+        for (int value : next) {
+            node = node.sub(value);
+        }
+        return node;
     }
 
     @Override
@@ -28,8 +116,21 @@ public record BranchPriority(int... priority) implements Comparable<BranchPriori
         return compare(this, o);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BranchPriority that = (BranchPriority) o;
+        return this.depth == that.depth && this.hash == that.hash && compare(this, that) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
     @Override
     public String toString() {
-        return Arrays.toString(this.priority);
+        return Arrays.toString(this.priority());
     }
 }
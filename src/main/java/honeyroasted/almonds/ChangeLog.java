@@ -0,0 +1,106 @@
+package honeyroasted.almonds;
+
+import java.util.Arrays;
+
+final class ChangeLog {
+    static final byte PUT = 0;
+    static final byte ADD = 1;
+    static final byte SET = 2;
+    static final byte DROP = 3;
+    static final byte ADD_METADATA = 4;
+    static final byte ATTACH_METADATA = 5;
+    static final byte REMOVE_METADATA = 6;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private byte[] ops;
+    private Constraint[] constraints;
+    private Object[] values;
+    private ConstraintMapper[] sources;
+    private Constraint[][] causes;
+    private int size;
+
+    ChangeLog() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private ChangeLog(int capacity) {
+        this.ops = new byte[capacity];
+        this.constraints = new Constraint[capacity];
+        this.values = new Object[capacity];
+    }
+
+    //Entries are never modified once appended, so any number of branches may hold a view over the same log
+    int append(byte op, Constraint constraint, Object value, ConstraintMapper source, Constraint[] cause) {
+        if (this.size == this.ops.length) {
+            int capacity = this.size * 2;
+            this.ops = Arrays.copyOf(this.ops, capacity);
+            this.constraints = Arrays.copyOf(this.constraints, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            if (this.sources != null) {
+                this.sources = Arrays.copyOf(this.sources, capacity);
+            }
+            if (this.causes != null) {
+                this.causes = Arrays.copyOf(this.causes, capacity);
+            }
+        }
+
+        this.ops[this.size] = op;
+        this.constraints[this.size] = constraint;
+        this.values[this.size] = value;
+        if (source != null) {
+            if (this.sources == null) {
+                this.sources = new ConstraintMapper[this.ops.length];
+            }
+            this.sources[this.size] = source;
+        }
+        if (cause != null) {
+            if (this.causes == null) {
+                this.causes = new Constraint[this.ops.length][];
+            }
+            this.causes[this.size] = cause;
+        }
+        return this.size++;
+    }
+
+    ChangeLog copy(int from, int to) {
+        ChangeLog copy = new ChangeLog(Math.max(INITIAL_CAPACITY, (to - from) * 2));
+        System.arraycopy(this.ops, from, copy.ops, 0, to - from);
+        System.arraycopy(this.constraints, from, copy.constraints, 0, to - from);
+        System.arraycopy(this.values, from, copy.values, 0, to - from);
+        if (this.sources != null) {
+            copy.sources = new ConstraintMapper[copy.ops.length];
+            System.arraycopy(this.sources, from, copy.sources, 0, to - from);
+        }
+        if (this.causes != null) {
+            copy.causes = new Constraint[copy.ops.length][];
+            System.arraycopy(this.causes, from, copy.causes, 0, to - from);
+        }
+        copy.size = to - from;
+        return copy;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    byte op(int index) {
+        return this.ops[index];
+    }
+
+    Constraint constraint(int index) {
+        return this.constraints[index];
+    }
+
+    Object value(int index) {
+        return this.values[index];
+    }
+
+    ConstraintMapper source(int index) {
+        return this.sources == null ? null : this.sources[index];
+    }
+
+    Constraint[] cause(int index) {
+        return this.causes == null ? null : this.causes[index];
+    }
+}
@@ -0,0 +1,177 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public final class CompiledConstraintSolver {
+    private final List<ConstraintMapperApplier> appliers;
+    private final List<Constraint> constraints;
+    private final PropertySet context;
+    private final boolean incremental;
+    private final ConstraintInterner interner;
+    private final SolveBudget budget;
+    private final SolverInstrumentation instrumentation;
+    private final boolean learning;
+    private final SolveCache cache;
+    private final boolean parallelComponents;
+    private final Function<Constraint, ? extends Collection<?>> componentKeys;
+    private final ForkJoinPool pool;
+
+    CompiledConstraintSolver(List<ConstraintMapperApplier> appliers, List<Constraint> constraints, PropertySet context,
+                             boolean incremental, ConstraintInterner interner, SolveBudget budget,
+                             SolverInstrumentation instrumentation, boolean learning, SolveCache cache,
+                             boolean parallelComponents, Function<Constraint, ? extends Collection<?>> componentKeys,
+                             ForkJoinPool pool) {
+        this.appliers = List.copyOf(appliers);
+        this.constraints = List.copyOf(constraints);
+        this.context = context.copy();
+        this.incremental = incremental;
+        this.interner = interner;
+        this.budget = budget;
+        this.instrumentation = instrumentation;
+        this.learning = learning;
+        this.cache = cache;
+        this.parallelComponents = parallelComponents;
+        this.componentKeys = componentKeys;
+        this.pool = pool;
+    }
+
+    public List<ConstraintMapperApplier> appliers() {
+        return this.appliers;
+    }
+
+    public List<Constraint> constraints() {
+        return this.constraints;
+    }
+
+    public ConstraintTree solve() {
+        return this.solve(Collections.emptyList(), new PropertySet());
+    }
+
+    public ConstraintTree solve(PropertySet context) {
+        return this.solve(Collections.emptyList(), context);
+    }
+
+    public ConstraintTree solve(Collection<? extends Constraint> constraints) {
+        return this.solve(constraints, new PropertySet());
+    }
+
+    public ConstraintTree solve(Collection<? extends Constraint> constraints, PropertySet context) {
+        return this.solve(constraints, context, this.budget);
+    }
+
+    public ConstraintTree solve(Collection<? extends Constraint> constraints, PropertySet context, SolveBudget budget) {
+        return this.solveBound(this.bind(constraints), context, budget);
+    }
+
+    public ComponentSolution solveComponents() {
+        return this.solveComponents(Collections.emptyList(), new PropertySet());
+    }
+
+    public ComponentSolution solveComponents(PropertySet context) {
+        return this.solveComponents(Collections.emptyList(), context);
+    }
+
+    public ComponentSolution solveComponents(Collection<? extends Constraint> constraints, PropertySet context) {
+        return this.solveComponents(constraints, context, this.budget);
+    }
+
+    public ComponentSolution solveComponents(Collection<? extends Constraint> constraints, PropertySet context, SolveBudget budget) {
+        //Components share no keys, so each is solved as its own tree and only combined on request
+        List<Constraint> bound = this.bind(constraints);
+        List<List<Constraint>> components = this.componentKeys == null ? List.of(bound) : ConstraintComponents.split(bound, this.componentKeys);
+        Stream<List<Constraint>> stream = this.parallelComponents ? components.parallelStream() : components.stream();
+        List<ConstraintTree> trees = stream.map(component -> this.solveBound(component, context, budget)).toList();
+        return new ComponentSolution(trees, () -> this.emptyTree(context, null));
+    }
+
+    private List<Constraint> bind(Collection<? extends Constraint> constraints) {
+        List<Constraint> bound = new ArrayList<>(this.constraints);
+        bound.addAll(constraints);
+        return bound;
+    }
+
+    private ConstraintTree solveBound(List<Constraint> constraints, PropertySet context, SolveBudget budget) {
+        if (this.cache != null) {
+            //Every call that hits the cache gets its own copy of the cached tree
+            PropertySet fullContext = new PropertySet().inheritFrom(context).inheritFrom(this.context);
+            return this.cache.get(SolveCache.Key.of(this.appliers, constraints, fullContext, this.incremental, this.learning),
+                    () -> this.emptyTree(context, budget), () -> this.solveTree(constraints, context, budget));
+        }
+        return this.solveTree(constraints, context, budget);
+    }
+
+    private ConstraintTree solveTree(List<Constraint> constraints, PropertySet context, SolveBudget budget) {
+        //Every call works on its own tree, the compiled state is only ever read
+        ConstraintTree tree = this.tree(constraints, context, budget);
+        for (ConstraintMapperApplier applier : this.appliers) {
+            if (!tree.withinBudget()) break;
+            applier.accept(tree);
+        }
+
+        return tree;
+    }
+
+    public SolutionIterator solveIterator() {
+        return this.solveIterator(Collections.emptyList(), new PropertySet());
+    }
+
+    public SolutionIterator solveIterator(Collection<? extends Constraint> constraints, PropertySet context) {
+        return this.solveIterator(constraints, context, this.budget);
+    }
+
+    //Every applier but the last runs to completion first, since it could still change a valid branch, and only the last one
+    //is stepped as branches are pulled. Each valid branch is yielded once, as a copy taken when it was found. An ORDERED or
+    //BACKTRACKING last stage stops at its first TRUE branch, so it yields only the branches that were valid by then
+    public SolutionIterator solveIterator(Collection<? extends Constraint> constraints, PropertySet context, SolveBudget budget) {
+        ConstraintTree tree = this.tree(this.bind(constraints), context, budget);
+        return new SolutionIterator(tree, this.appliers);
+    }
+
+    public Stream<ConstraintBranch> solveStream() {
+        return this.solveStream(Collections.emptyList(), new PropertySet());
+    }
+
+    public Stream<ConstraintBranch> solveStream(PropertySet context) {
+        return this.solveStream(Collections.emptyList(), context);
+    }
+
+    public Stream<ConstraintBranch> solveStream(Collection<? extends Constraint> constraints, PropertySet context) {
+        return this.solveStream(constraints, context, this.budget);
+    }
+
+    //A stream simply ends when the budget runs out, use solveIterator to tell that apart from having found every solution
+    public Stream<ConstraintBranch> solveStream(Collection<? extends Constraint> constraints, PropertySet context, SolveBudget budget) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this.solveIterator(constraints, context, budget),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private ConstraintTree tree(List<Constraint> constraints, PropertySet context, SolveBudget budget) {
+        ConstraintTree tree = this.emptyTree(context, budget);
+        ConstraintBranch branch = new ConstraintBranch(tree);
+        constraints.forEach(branch::add);
+        tree.addBranch(branch);
+        return tree;
+    }
+
+    private ConstraintTree emptyTree(PropertySet context, SolveBudget budget) {
+        ConstraintTree tree = new ConstraintTree().incremental(this.incremental).interner(this.interner)
+                .budget(budget).instrumentation(this.instrumentation).learning(this.learning)
+                .pool(this.pool).appliers(this.appliers);
+        tree.metadata().inheritFrom(context);
+        tree.metadata().inheritFrom(this.context);
+
+        return tree;
+    }
+}
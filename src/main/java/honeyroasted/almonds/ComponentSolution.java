@@ -0,0 +1,130 @@
+package honeyroasted.almonds;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public final class ComponentSolution {
+    private final List<ConstraintTree> components;
+    private final Supplier<ConstraintTree> emptyTree;
+    private ConstraintTree tree;
+
+    ComponentSolution(List<ConstraintTree> components, Supplier<ConstraintTree> emptyTree) {
+        this.components = List.copyOf(components);
+        this.emptyTree = emptyTree;
+    }
+
+    public List<ConstraintTree> components() {
+        return this.components;
+    }
+
+    public Constraint.Status status() {
+        //The combination is only as good as its worst component
+        Constraint.Status status = Constraint.Status.TRUE;
+        for (ConstraintTree component : this.components) {
+            Constraint.Status curr = component.status();
+            if (rank(curr) < rank(status)) {
+                status = curr;
+            }
+        }
+        return status;
+    }
+
+    private static int rank(Constraint.Status status) {
+        return switch (status) {
+            case FALSE -> 0;
+            case UNKNOWN -> 1;
+            case ASSUMED -> 2;
+            case TRUE -> 3;
+        };
+    }
+
+    public Optional<SolveBudget.Exhaustion> exhausted() {
+        for (ConstraintTree component : this.components) {
+            if (component.exhausted().isPresent()) {
+                return component.exhausted();
+            }
+        }
+        return Optional.empty();
+    }
+
+    public long numValidBranches() {
+        return this.count(ConstraintTree::validBranches);
+    }
+
+    public long numBranches() {
+        return this.count(tree -> tree.currentBranches().keySet());
+    }
+
+    private long count(Function<ConstraintTree, Set<ConstraintBranch>> branches) {
+        long count = 1;
+        for (ConstraintTree component : this.components) {
+            int size = branches.apply(component).size();
+            if (size == 0) return 0;
+            count = count > Long.MAX_VALUE / size ? Long.MAX_VALUE : count * size;
+        }
+        return count;
+    }
+
+    public Stream<ConstraintBranch> validBranches() {
+        return this.combine(ConstraintTree::validBranches, this.emptyTree.get());
+    }
+
+    //Materializes every combination of component branches, this is the full product the components avoid
+    public synchronized ConstraintTree tree() {
+        if (this.tree == null) {
+            ConstraintTree tree = this.emptyTree.get();
+            this.combine(component -> component.currentBranches().keySet(), tree).forEach(tree::addBranch);
+            this.tree = tree;
+        }
+        return this.tree;
+    }
+
+    private Stream<ConstraintBranch> combine(Function<ConstraintTree, Set<ConstraintBranch>> branches, ConstraintTree parent) {
+        List<List<ConstraintBranch>> parts = new ArrayList<>();
+        for (ConstraintTree component : this.components) {
+            parts.add(new ArrayList<>(branches.apply(component)));
+        }
+
+        Iterator<ConstraintBranch> iterator = new Iterator<>() {
+            private final int[] indices = new int[parts.size()];
+            private boolean done = parts.stream().anyMatch(List::isEmpty);
+
+            @Override
+            public boolean hasNext() {
+                return !this.done;
+            }
+
+            @Override
+            public ConstraintBranch next() {
+                if (this.done) throw new NoSuchElementException();
+
+                List<ConstraintBranch> combination = new ArrayList<>(this.indices.length);
+                for (int i = 0; i < this.indices.length; i++) {
+                    combination.add(parts.get(i).get(this.indices[i]));
+                }
+
+                //Advance like an odometer, the last component turning fastest
+                int i = this.indices.length - 1;
+                while (i >= 0 && ++this.indices[i] == parts.get(i).size()) {
+                    this.indices[i] = 0;
+                    i--;
+                }
+                this.done = i < 0;
+
+                return ConstraintBranch.combine(parent, combination);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
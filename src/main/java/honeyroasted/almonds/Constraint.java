@@ -1,6 +1,9 @@
 package honeyroasted.almonds;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -9,15 +12,12 @@ public interface Constraint extends SimpleName {
     Constraint TRUE = new True();
     Constraint FALSE = new False();
 
+    //Parameters feed the cached hash code and interning, so they must be immutable, a parameter that changes after the
+    //constraint is created leaves it filed under a stale hash in branches and interners
     List<Object> parameters();
 
     default  <T extends Constraint> T createNew(List<?> parameters) {
-        try {
-            return (T) getClass().getConstructors()[0].newInstance(parameters.toArray());
-        } catch (ArrayIndexOutOfBoundsException | InstantiationException | IllegalAccessException |
-                 InvocationTargetException e) {
-            throw new IllegalStateException("Could not create new instance via reflection", e);
-        }
+        return ConstraintFactories.create(getClass(), parameters);
     }
 
     static Constraint label(String name) {
@@ -36,9 +36,22 @@ public interface Constraint extends SimpleName {
         return new Or();
     }
 
+    static <T extends Constraint> T intern(T constraint) {
+        return ConstraintInterner.global().intern(constraint);
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.CONSTRUCTOR)
+    @interface Factory {
+
+    }
+
     abstract class Unary<T> implements Constraint {
         private T value;
 
+        private int hash;
+        ConstraintInterner interner;
+
         public Unary(T value) {
             this.value = value;
         }
@@ -58,12 +71,18 @@ public interface Constraint extends SimpleName {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             Unary<?> unary = (Unary<?>) o;
-            return Objects.equals(value, unary.value);
+            if (this.interner != null && this.interner == unary.interner) return false;
+            return this.hashCode() == unary.hashCode() && Objects.equals(value, unary.value);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(value);
+            int h = this.hash;
+            if (h == 0) {
+                h = Objects.hash(value);
+                this.hash = h;
+            }
+            return h;
         }
     }
 
@@ -71,6 +90,9 @@ public interface Constraint extends SimpleName {
         private L left;
         private R right;
 
+        private int hash;
+        ConstraintInterner interner;
+
         public Binary(L left, R right) {
             this.left = left;
             this.right = right;
@@ -94,12 +116,18 @@ public interface Constraint extends SimpleName {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             Binary<?, ?> binary = (Binary<?, ?>) o;
-            return Objects.equals(left, binary.left) && Objects.equals(right, binary.right);
+            if (this.interner != null && this.interner == binary.interner) return false;
+            return this.hashCode() == binary.hashCode() && Objects.equals(left, binary.left) && Objects.equals(right, binary.right);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(left, right);
+            int h = this.hash;
+            if (h == 0) {
+                h = Objects.hash(left, right);
+                this.hash = h;
+            }
+            return h;
         }
     }
 
@@ -108,6 +136,9 @@ public interface Constraint extends SimpleName {
         private M middle;
         private R right;
 
+        private int hash;
+        ConstraintInterner interner;
+
         public Trinary(L left, M middle, R right) {
             this.left = left;
             this.middle = middle;
@@ -136,12 +167,18 @@ public interface Constraint extends SimpleName {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             Trinary<?, ?, ?> trinary = (Trinary<?, ?, ?>) o;
-            return Objects.equals(left, trinary.left) && Objects.equals(middle, trinary.middle) && Objects.equals(right, trinary.right);
+            if (this.interner != null && this.interner == trinary.interner) return false;
+            return this.hashCode() == trinary.hashCode() && Objects.equals(left, trinary.left) && Objects.equals(middle, trinary.middle) && Objects.equals(right, trinary.right);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(left, middle, right);
+            int h = this.hash;
+            if (h == 0) {
+                h = Objects.hash(left, middle, right);
+                this.hash = h;
+            }
+            return h;
         }
     }
 
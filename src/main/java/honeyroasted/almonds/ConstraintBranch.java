@@ -3,38 +3,95 @@ package honeyroasted.almonds;
 import honeyroasted.collect.property.PropertySet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Predicate;
 
 public class ConstraintBranch implements SimpleName {
     private ConstraintTree parent;
 
     private PropertySet metadata = new PropertySet();
 
-    private Map<Constraint, Constraint.Status> constraints = new LinkedHashMap<>();
-    private Map<Constraint, PropertySet> constraintMetadata = new HashMap<>();
-    private Map<Constraint, Constraint.Status> constraintsView = Collections.unmodifiableMap(constraints);
+    private LayeredMap<Constraint, Constraint.Status> constraints;
+    private LayeredMap<Constraint, PropertySet> constraintMetadata = new LayeredMap<>();
+    //Metadata sets are shared with forks and snapshots until written to, these are the ones this branch may write in place
+    private Set<Constraint> ownedMetadata;
+    private Map<Constraint, Constraint.Status> constraintsView;
 
-    private Map<Class<?>, Set<Constraint>> typedConstraints = new HashMap<>();
-    private Map<Class<?>, Set<Constraint>> typedConstraintsView = Collections.unmodifiableMap(typedConstraints);
+    private LayeredMap<Class<?>, Set<Constraint>> typedConstraints;
+    private Set<Class<?>> ownedTypes = new HashSet<>();
+    private int[] statusCounts = new int[Constraint.Status.values().length];
+    private int constraintsHash;
+    private Map<Class<?>, Set<Constraint>> typedConstraintsView;
 
     private List<ConstraintBranch> divergence;
     private List<ConstraintBranch> newDivergence;
 
-    private List<Predicate<ConstraintBranch>> changes = new ArrayList<>();
+    //Pending changes are the range [changesFrom, changesTo) of a log that may be shared with other branches
+    private ChangeLog changes;
+    private int changesFrom;
+    private int changesTo;
 
     private boolean trimmed;
+    private BranchPriority priority = BranchPriority.root();
+    private ConstraintMapper attributed;
+
+    //Conflict learning, the decisions this branch was given and which of them each constraint follows from
+    private static final Constraint[] unexplained = new Constraint[0];
+    private Constraint[] causes;
+    private boolean dispatching;
+    private LayeredMap<Constraint, Constraint.Status> decisions;
+    private LayeredMap<Constraint, Set<Constraint>> origins;
+
+    //Backtracking, every applied change leaves an undo entry and divergence is left to the caller as choices
+    private List<Undo> trail;
+    private List<List<Snapshot>> choices;
+
+    private Changed changed;
+    private Changed changedCacheHead;
+    private int changedCacheRound;
+    private Set<Constraint> changedCache;
+    private Object[] visitors = new Object[0];
+    private int[] visitedRounds = new int[0];
+
+    private record Changed(int round, Constraint constraint, Changed next) {
+    }
+
+    private record Undo(Constraint constraint, Constraint.Status status, boolean typed, boolean metadataChanged,
+                        PropertySet metadata, Constraint.Status decision, Set<Constraint> origin) {
+    }
+
+    public static final class Mark {
+        private final int trail;
+        private final int[] statusCounts;
+        private final int constraintsHash;
+        private final boolean trimmed;
+        private final Changed changed;
+        private final Object[] visitors;
+        private final int[] visitedRounds;
+        private final PropertySet metadata;
+        private final BranchPriority priority;
+
+        private Mark(ConstraintBranch branch) {
+            this.trail = branch.trail.size();
+            this.statusCounts = branch.statusCounts.clone();
+            this.constraintsHash = branch.constraintsHash;
+            this.trimmed = branch.trimmed;
+            this.changed = branch.changed;
+            this.visitors = branch.visitors;
+            this.visitedRounds = branch.visitedRounds;
+            this.metadata = branch.metadata.copy();
+            this.priority = branch.priority;
+        }
+    }
 
     public record Snapshot(PropertySet metadata, Map<Constraint, Constraint.Status> constraints,
                            Map<Constraint, PropertySet> constraintMetadata) {
@@ -50,25 +107,404 @@ public class ConstraintBranch implements SimpleName {
     }
 
     public ConstraintBranch(ConstraintTree parent) {
+        this(parent, new LayeredMap<>(), new LayeredMap<>());
+    }
+
+    private ConstraintBranch(ConstraintTree parent, LayeredMap<Constraint, Constraint.Status> constraints, LayeredMap<Class<?>, Set<Constraint>> typedConstraints) {
         this.parent = parent;
+        this.constraints = constraints;
+        this.constraintsView = Collections.unmodifiableMap(constraints);
+        this.typedConstraints = typedConstraints;
+        this.typedConstraintsView = Collections.unmodifiableMap(typedConstraints);
     }
 
     public boolean executeChanges() {
         boolean modified = false;
-        for (Predicate<ConstraintBranch> change : this.changes) {
-            if (change.test(this)) {
-                modified = true;
+        ChangeLog log = this.changes;
+        if (log != null) {
+            SolverInstrumentation instrumentation = this.parent == null ? null : this.parent.instrumentation();
+            boolean learning = this.learning();
+            for (int i = this.changesFrom; i < this.changesTo; i++) {
+                if (this.trail != null) {
+                    this.record(log.op(i), log.constraint(i));
+                }
+                boolean applied = this.apply(log.op(i), log.constraint(i), log.value(i));
+                if (applied) {
+                    modified = true;
+                    if (learning) {
+                        this.explain(log.op(i), log.constraint(i), log.value(i), log.cause(i));
+                    }
+                }
+                if (instrumentation != null && log.source(i) != null) {
+                    instrumentation.changeExecuted(log.source(i), applied);
+                }
             }
         }
-        this.changes.clear();
+        this.changes = null;
+        this.changesFrom = 0;
+        this.changesTo = 0;
+        this.changedCache = null;
+        if (this.changed != null) {
+            this.trimChanged();
+        }
         return modified;
     }
 
-    private void change(Predicate<ConstraintBranch> change) {
-        this.changes.add(change);
+    private boolean apply(byte op, Constraint constraint, Object value) {
+        switch (op) {
+            case ChangeLog.PUT: {
+                Constraint.Status status = (Constraint.Status) value;
+                Constraint.Status current = this.constraints.put(constraint, status);
+                this.track(constraint, current, status);
+                this.addTyped(constraint);
+                if (status == Constraint.Status.FALSE) this.trimmed = true;
+                return current == null || current != status;
+            }
+            case ChangeLog.ADD: {
+                Constraint.Status status = (Constraint.Status) value;
+                Object prev = this.constraints.putIfAbsent(constraint, status);
+                if (prev == null) this.track(constraint, null, status);
+                this.addTyped(constraint);
+                if (prev == null && status == Constraint.Status.FALSE) this.trimmed = true;
+                return prev == null;
+            }
+            case ChangeLog.SET: {
+                Constraint.Status status = (Constraint.Status) value;
+                Constraint.Status curr = this.constraints.get(constraint);
+                if (curr == null || curr != status) {
+                    if (status == Constraint.Status.FALSE) this.trimmed = true;
+                    this.constraints.put(constraint, status);
+                    this.track(constraint, curr, status);
+                    return true;
+                }
+                return false;
+            }
+            case ChangeLog.DROP: {
+                Constraint.Status prev = this.constraints.remove(constraint);
+                this.constraintMetadata.remove(constraint);
+                this.disownMetadata(constraint);
+                if (prev != null) this.track(constraint, prev, null);
+
+                this.removeTyped(constraint);
+
+                if (prev == Constraint.Status.FALSE) this.trimmed = this.status() == Constraint.Status.FALSE;
+                return prev != null;
+            }
+            case ChangeLog.ADD_METADATA: {
+                PropertySet ps = (PropertySet) value;
+                PropertySet md = this.constraintMetadata.get(constraint);
+                if (md == null) {
+                    this.constraintMetadata.put(constraint, ps);
+                } else if (ps != emptyProperties) {
+                    this.writableMetadata(constraint, md).inheritFrom(ps);
+                }
+                return false;
+            }
+            case ChangeLog.ATTACH_METADATA: {
+                PropertySet md = this.constraintMetadata.get(constraint);
+                if (md != null) {
+                    this.writableMetadata(constraint, md).attach(value);
+                }
+                return false;
+            }
+            case ChangeLog.REMOVE_METADATA: {
+                PropertySet md = this.constraintMetadata.get(constraint);
+                if (md != null) {
+                    this.writableMetadata(constraint, md).remove(value);
+                }
+                return false;
+            }
+            default:
+                throw new IllegalStateException("Unknown change op: " + op);
+        }
+    }
+
+    public boolean backtracking() {
+        return this.trail != null;
+    }
+
+    public ConstraintBranch backtracking(boolean backtracking) {
+        this.trail = backtracking ? new ArrayList<>() : null;
+        this.choices = null;
+        return this;
+    }
+
+    public Mark mark() {
+        if (this.trail == null) {
+            throw new IllegalStateException("Branch is not backtracking");
+        } else if (this.hasChanges()) {
+            throw new IllegalStateException("Branch has pending changes");
+        }
+        return new Mark(this);
+    }
+
+    //Undoes every change applied since the mark, the caller is responsible for re-keying the branch in its tree
+    public void rollback(Mark mark) {
+        for (int i = this.trail.size() - 1; i >= mark.trail; i--) {
+            this.undo(this.trail.remove(i));
+        }
+
+        this.statusCounts = mark.statusCounts.clone();
+        this.constraintsHash = mark.constraintsHash;
+        this.trimmed = mark.trimmed;
+        this.changed = mark.changed;
+        this.changedCache = null;
+        this.visitors = mark.visitors;
+        this.visitedRounds = mark.visitedRounds;
+        this.metadata.copyFrom(mark.metadata);
+        this.priority = mark.priority;
+        this.changes = null;
+        this.changesFrom = 0;
+        this.changesTo = 0;
+        this.choices = null;
+    }
+
+    public List<List<Snapshot>> takeChoices() {
+        List<List<Snapshot>> choices = this.choices;
+        this.choices = null;
+        if (choices != null) {
+            //Alternatives are tried in the order their priority would rank the diverged branches
+            for (int i = 0; i < choices.size(); i++) {
+                List<Snapshot> factor = choices.get(i);
+                Integer[] order = new Integer[factor.size()];
+                for (int j = 0; j < order.length; j++) {
+                    order[j] = j;
+                }
+                Arrays.sort(order, (a, b) -> subPriority(this.priority, factor.get(a), a).compareTo(subPriority(this.priority, factor.get(b), b)));
+
+                List<Snapshot> sorted = new ArrayList<>(order.length);
+                for (Integer index : order) {
+                    sorted.add(factor.get(index));
+                }
+                choices.set(i, sorted);
+            }
+        }
+        return choices;
+    }
+
+    public ConstraintBranch choose(Snapshot snapshot, int index) {
+        this.priority = subPriority(this.priority, snapshot, index);
+        this.metadata.copyFrom(new PropertySet()
+                .inheritFrom(branchMetadata(snapshot))
+                .inheritFrom(this.metadata));
+        snapshot.constraints().forEach(this::add);
+        snapshot.constraintMetadata().forEach(this::addMetadata);
+        return this;
+    }
+
+    private void record(byte op, Constraint constraint) {
+        boolean metadataChanged = op == ChangeLog.DROP || op == ChangeLog.ADD_METADATA || op == ChangeLog.ATTACH_METADATA || op == ChangeLog.REMOVE_METADATA;
+        PropertySet metadata = metadataChanged ? this.constraintMetadata.get(constraint) : null;
+        //Only sets this branch owns are written in place, shared ones are replaced on write and can be restored as they are
+        if (metadata != null && this.ownedMetadata != null && this.ownedMetadata.contains(constraint)) {
+            metadata = metadata.copy();
+        }
+        Set<Constraint> typed = this.typedConstraints.get(constraint.getClass());
+
+        this.trail.add(new Undo(constraint, this.constraints.get(constraint), typed != null && typed.contains(constraint),
+                metadataChanged, metadata,
+                this.decisions == null ? null : this.decisions.get(constraint),
+                this.origins == null ? null : this.origins.get(constraint)));
+    }
+
+    private void undo(Undo undo) {
+        Constraint constraint = undo.constraint();
+        if (undo.status() == null) {
+            this.constraints.remove(constraint);
+        } else {
+            this.constraints.put(constraint, undo.status());
+        }
+
+        if (undo.typed()) {
+            this.addTyped(constraint);
+        } else {
+            this.removeTyped(constraint);
+        }
+
+        if (undo.metadataChanged()) {
+            this.disownMetadata(constraint);
+            if (undo.metadata() == null) {
+                this.constraintMetadata.remove(constraint);
+            } else {
+                this.constraintMetadata.put(constraint, undo.metadata());
+            }
+        }
+
+        if (this.decisions != null) {
+            if (undo.decision() == null) {
+                this.decisions.remove(constraint);
+            } else {
+                this.decisions.put(constraint, undo.decision());
+            }
+            if (undo.origin() == null) {
+                this.origins.remove(constraint);
+            } else {
+                this.origins.put(constraint, undo.origin());
+            }
+        }
+    }
+
+    private PropertySet writableMetadata(Constraint constraint, PropertySet md) {
+        if (this.ownedMetadata == null) {
+            this.ownedMetadata = new HashSet<>();
+        }
+        if (this.ownedMetadata.add(constraint)) {
+            md = md.copy();
+            this.constraintMetadata.put(constraint, md);
+        }
+        return md;
+    }
+
+    private void disownMetadata(Constraint constraint) {
+        if (this.ownedMetadata != null) {
+            this.ownedMetadata.remove(constraint);
+        }
+    }
+
+    private void change(byte op, Constraint constraint, Object value) {
+        if (this.parent != null) {
+            this.parent.checkNotFrozen();
+        }
+        ConstraintMapper source = this.attributed != null && this.parent != null && this.parent.instrumentation() != null ?
+                this.attributed : null;
+        Constraint[] cause = this.causes == null && this.dispatching ? unexplained : this.causes;
+        this.propagate(this.append(op, constraint, value, source, cause));
+    }
+
+    private int append(byte op, Constraint constraint, Object value, ConstraintMapper source, Constraint[] cause) {
+        if (this.changes == null) {
+            this.changes = new ChangeLog();
+            this.changesFrom = 0;
+            this.changesTo = 0;
+        } else if (this.changesTo != this.changes.size()) {
+            //Another branch sharing this log already appended past our view, so take our own copy of it
+            this.changes = this.changes.copy(this.changesFrom, this.changesTo);
+            this.changesTo -= this.changesFrom;
+            this.changesFrom = 0;
+        }
+        this.changes.append(op, constraint, value, source, cause);
+        return this.changesTo++;
+    }
+
+    private void follow(ChangeLog log, int index) {
+        if (this.changesFrom == this.changesTo) {
+            //Nothing pending, just view the other log
+            this.changes = log;
+            this.changesFrom = index;
+            this.changesTo = index + 1;
+        } else if (this.changes == log && this.changesTo == index) {
+            this.changesTo++;
+        } else {
+            this.append(log.op(index), log.constraint(index), log.value(index), log.source(index), log.cause(index));
+        }
+        this.propagate(this.changesTo - 1);
+    }
+
+    private void propagate(int index) {
         if (this.divergence != null) {
-            this.divergence.forEach(cb -> cb.change(change));
+            for (ConstraintBranch cb : this.divergence) {
+                cb.follow(this.changes, index);
+            }
+        }
+    }
+
+    public void attribute(ConstraintMapper mapper) {
+        this.attributed = mapper;
+    }
+
+    public ConstraintBranch causes(Constraint... causes) {
+        this.causes = causes;
+        return this;
+    }
+
+    public ConstraintBranch clearCauses() {
+        this.causes = null;
+        return this;
+    }
+
+    //Set while mappers run on this branch, a change they make without naming causes is not taken as a decision
+    public ConstraintBranch dispatching(boolean dispatching) {
+        this.dispatching = dispatching;
+        return this;
+    }
+
+    public boolean dispatching() {
+        return this.dispatching;
+    }
+
+    boolean learning() {
+        return this.parent != null && this.parent.learning();
+    }
+
+    Map<Constraint, Constraint.Status> decisions() {
+        return this.decisions == null ? Collections.emptyMap() : this.decisions;
+    }
+
+    private void explain(byte op, Constraint constraint, Object value, Constraint[] cause) {
+        if (this.decisions == null) {
+            this.decisions = new LayeredMap<>();
+            this.origins = new LayeredMap<>();
+        }
+
+        if (op == ChangeLog.DROP || cause == unexplained) {
+            //A mapper made this change without saying why, so it is treated as following from anything decided so far
+            this.origins.remove(constraint);
+        } else if (op == ChangeLog.PUT || op == ChangeLog.ADD || op == ChangeLog.SET) {
+            if (cause == null) {
+                //Nothing accounts for this change, so it is taken as given and becomes a decision of its own
+                this.decisions.put(constraint, (Constraint.Status) value);
+                this.origins.put(constraint, Set.of(constraint));
+            } else {
+                Set<Constraint> prev = this.origins.get(constraint);
+                Set<Constraint> origin = this.originOf(cause);
+                this.origins.put(constraint, prev == null ? origin : union(prev, origin));
+            }
+        }
+    }
+
+    private Set<Constraint> originOf(Constraint[] cause) {
+        Set<Constraint> origin = Collections.emptySet();
+        for (Constraint constraint : cause) {
+            Set<Constraint> known = this.origins.get(constraint);
+            //A cause with no known origin could follow from anything decided so far
+            origin = union(origin, known == null ? Set.copyOf(this.decisions.keySet()) : known);
+        }
+        return origin;
+    }
+
+    private static Set<Constraint> union(Set<Constraint> a, Set<Constraint> b) {
+        if (a == b || b.isEmpty()) return a;
+        if (a.isEmpty()) return b;
+        if (a.containsAll(b)) return a;
+        if (b.containsAll(a)) return b;
+
+        Set<Constraint> result = new HashSet<>(a);
+        result.addAll(b);
+        return result;
+    }
+
+    Map<Constraint, Constraint.Status> conflict() {
+        if (this.decisions == null) return null;
+
+        //Any FALSE constraint explains the trim on its own, the one following from the fewest decisions makes the strongest nogood
+        Set<Constraint> smallest = null;
+        for (Map.Entry<Constraint, Constraint.Status> entry : this.constraints.entrySet()) {
+            if (entry.getValue() == Constraint.Status.FALSE) {
+                Set<Constraint> origin = this.origins.get(entry.getKey());
+                if (origin != null && (smallest == null || origin.size() < smallest.size())) {
+                    smallest = origin;
+                }
+            }
         }
+        if (smallest == null) return null;
+
+        Map<Constraint, Constraint.Status> nogood = new HashMap<>();
+        for (Constraint decision : smallest) {
+            Constraint.Status status = this.decisions.get(decision);
+            if (status == null) return null;
+            nogood.put(decision, status);
+        }
+        return nogood;
     }
 
     public ConstraintBranch copy() {
@@ -76,13 +512,8 @@ public class ConstraintBranch implements SimpleName {
     }
 
     public ConstraintBranch copy(ConstraintTree parent) {
-        ConstraintBranch copy = new ConstraintBranch(parent);
+        ConstraintBranch copy = this.copyForDivergence(parent);
         copy.metadata.copyFrom(this.metadata);
-        copy.constraints.putAll(this.constraints);
-        this.constraintMetadata.forEach((con, meta) -> copy.constraintMetadata.put(con, meta.copy()));
-        this.typedConstraints.forEach((t, cons) -> copy.typedConstraints.put(t, new HashSet<>(cons)));
-        copy.changes.addAll(this.changes);
-        copy.trimmed = this.trimmed;
         return copy;
     }
 
@@ -104,6 +535,15 @@ public class ConstraintBranch implements SimpleName {
         return this.trimmed;
     }
 
+    public BranchPriority priority() {
+        return this.priority;
+    }
+
+    public ConstraintBranch priority(BranchPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     public Map<Constraint, Constraint.Status> constraints() {
         return this.constraintsView;
     }
@@ -129,16 +569,128 @@ public class ConstraintBranch implements SimpleName {
     }
 
     public Constraint.Status status() {
-        if (this.constraints.isEmpty()) {
+        if (this.statusCounts[Constraint.Status.FALSE.ordinal()] > 0) {
+            return Constraint.Status.FALSE;
+        } else if (this.constraints.isEmpty() || this.statusCounts[Constraint.Status.UNKNOWN.ordinal()] > 0) {
             return Constraint.Status.UNKNOWN;
+        } else if (this.statusCounts[Constraint.Status.ASSUMED.ordinal()] > 0) {
+            return Constraint.Status.ASSUMED;
+        } else {
+            return Constraint.Status.TRUE;
+        }
+    }
+
+    private void track(Constraint constraint, Constraint.Status prev, Constraint.Status next) {
+        if (prev != null) {
+            this.statusCounts[prev.ordinal()]--;
         } else {
-            Iterator<Constraint.Status> iter = this.constraints.values().iterator();
-            Constraint.Status curr = iter.next();
-            while (iter.hasNext()) {
-                curr = curr.and(iter.next());
+            this.constraintsHash += constraint.hashCode();
+        }
+
+        if (next != null) {
+            this.statusCounts[next.ordinal()]++;
+            if (prev != next && this.parent != null && this.parent.incremental()) {
+                this.changed = new Changed(this.parent.round(), constraint, this.changed);
+            }
+        } else {
+            this.constraintsHash -= constraint.hashCode();
+        }
+    }
+
+    public Set<Constraint> changedSince(int round) {
+        if (this.changed == null || this.changed.round() < round) {
+            return Collections.emptySet();
+        } else if (this.changedCache != null && this.changedCacheHead == this.changed && this.changedCacheRound == round) {
+            return this.changedCache;
+        }
+
+        List<Constraint> recent = new ArrayList<>();
+        for (Changed curr = this.changed; curr != null && curr.round() >= round; curr = curr.next()) {
+            recent.add(curr.constraint());
+        }
+
+        Set<Constraint> result = new LinkedHashSet<>();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Constraint constraint = recent.get(i);
+            if (this.constraints.containsKey(constraint)) {
+                result.add(constraint);
+            }
+        }
+
+        this.changedCacheHead = this.changed;
+        this.changedCacheRound = round;
+        this.changedCache = Collections.unmodifiableSet(result);
+        return this.changedCache;
+    }
+
+    //Visitors only ask for changes since their last visit and new visitors see everything, so history older than the
+    //oldest visit is never read again. The entries are shared with forks, so the kept part is rebuilt instead of cut
+    private void trimChanged() {
+        int oldest = Integer.MAX_VALUE;
+        for (int round : this.visitedRounds) {
+            oldest = Math.min(oldest, round);
+        }
+
+        int kept = 0;
+        Changed curr = this.changed;
+        while (curr != null && curr.round() >= oldest) {
+            curr = curr.next();
+            kept++;
+        }
+        if (curr == null) return;
+
+        Changed[] keep = new Changed[kept];
+        curr = this.changed;
+        for (int i = 0; i < kept; i++) {
+            keep[i] = curr;
+            curr = curr.next();
+        }
+
+        Changed trimmed = null;
+        for (int i = kept - 1; i >= 0; i--) {
+            trimmed = new Changed(keep[i].round(), keep[i].constraint(), trimmed);
+        }
+        this.changed = trimmed;
+    }
+
+    int changedHistory() {
+        int size = 0;
+        for (Changed curr = this.changed; curr != null; curr = curr.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    public int visitedRound(Object visitor) {
+        for (int i = 0; i < this.visitors.length; i++) {
+            if (this.visitors[i] == visitor) {
+                return this.visitedRounds[i];
+            }
+        }
+        return -1;
+    }
+
+    public void visit(Object visitor, int round) {
+        for (int i = 0; i < this.visitors.length; i++) {
+            if (this.visitors[i] == visitor) {
+                //The arrays are shared with forks of this branch, so replace instead of writing through
+                int[] rounds = this.visitedRounds.clone();
+                rounds[i] = round;
+                this.visitedRounds = rounds;
+                return;
             }
-            return curr;
         }
+
+        Object[] visitors = Arrays.copyOf(this.visitors, this.visitors.length + 1);
+        int[] rounds = Arrays.copyOf(this.visitedRounds, this.visitedRounds.length + 1);
+        visitors[visitors.length - 1] = visitor;
+        rounds[rounds.length - 1] = round;
+        this.visitors = visitors;
+        this.visitedRounds = rounds;
+    }
+
+    boolean hasChanges() {
+        return this.changesTo != this.changesFrom;
     }
 
     public void diverge(Constraint... constraints) {
@@ -169,27 +721,37 @@ public class ConstraintBranch implements SimpleName {
                 //Just adding the branch to this one
                 branches.forEach(branch -> {
                     this.metadata().copyFrom(new PropertySet()
-                            .inheritFrom(branch.metadata())
+                            .inheritFrom(branchMetadata(branch))
                             .inheritFrom(this.metadata()));
                     branch.constraints().forEach(this::add);
                     branch.constraintMetadata().forEach(this::addMetadata);
                 });
+            } else if (this.trail != null) {
+                if (this.choices == null) {
+                    this.choices = new ArrayList<>();
+                }
+                this.choices.add(branches);
             } else {
                 if (this.divergence == null) {
                     this.divergence = new ArrayList<>();
                 }
 
                 if (this.divergence.isEmpty()) {
-                    branches.forEach(snapshot -> {
+                    for (int i = 0; i < branches.size(); i++) {
+                        //The first alternative is always kept, so the branch still diverges once the budget runs out
+                        if (i > 0 && !this.reserveBranch()) break;
+
+                        Snapshot snapshot = branches.get(i);
                         ConstraintBranch newBranch = this.copyForDivergence(this.parent);
-                        newBranch.metadata().inheritFrom(snapshot.metadata())
+                        newBranch.priority = subPriority(this.priority, snapshot, i);
+                        newBranch.metadata().inheritFrom(branchMetadata(snapshot))
                                 .inheritFrom(this.metadata);
 
                         snapshot.constraints().forEach(newBranch::add);
                         snapshot.constraintMetadata().forEach(newBranch::addMetadata);
                         newBranch.executeChanges();
                         this.divergence.add(newBranch);
-                    });
+                    }
                 } else {
                     if (this.newDivergence == null) {
                         this.newDivergence = new ArrayList<>();
@@ -198,15 +760,21 @@ public class ConstraintBranch implements SimpleName {
                         ;
                     }
 
-                    for (Snapshot snapshot : branches) {
+                    for (int i = 0; i < branches.size(); i++) {
+                        Snapshot snapshot = branches.get(i);
                         for (ConstraintBranch diverge : this.divergence) {
+                            //The product replaces the current alternatives, which were already reserved, so only its growth is
+                            if (newDivergence.size() >= this.divergence.size() && !this.reserveBranch()) break;
+
                             ConstraintBranch newBranch = this.copyForDivergence(this.parent);
-                            newBranch.metadata().inheritFrom(snapshot.metadata())
+                            newBranch.priority = subPriority(diverge.priority, snapshot, i);
+                            newBranch.metadata().inheritFrom(branchMetadata(snapshot))
                                     .inheritFrom(diverge.metadata())
                                     .inheritFrom(this.metadata());
 
                             diverge.constraints().forEach(newBranch::add);
                             diverge.constraintMetadata.forEach(newBranch::addMetadata);
+                            diverge.ownedMetadata = null;
                             snapshot.constraints().forEach(newBranch::add);
                             snapshot.constraintMetadata().forEach(newBranch::addMetadata);
                             newBranch.executeChanges();
@@ -222,63 +790,136 @@ public class ConstraintBranch implements SimpleName {
         }
     }
 
+    private static BranchPriority subPriority(BranchPriority prefix, Snapshot snapshot, int index) {
+        //Mappers can rank their alternatives by attaching a priority to the snapshot, otherwise snapshot order is used
+        BranchPriority priority = snapshot.metadata().firstOr(BranchPriority.class, null);
+        return priority == null ? prefix.sub(index) : prefix.sub(priority.priority());
+    }
+
+    private static PropertySet branchMetadata(Snapshot snapshot) {
+        //The priority only orders the alternatives, the branch that is chosen does not carry it
+        if (!snapshot.metadata().has(BranchPriority.class)) {
+            return snapshot.metadata();
+        }
+
+        PropertySet metadata = new PropertySet();
+        snapshot.metadata().all(Object.class).forEach(obj -> {
+            if (!(obj instanceof BranchPriority)) {
+                metadata.attach(obj);
+            }
+        });
+        return metadata;
+    }
+
+    private Constraint intern(Constraint constraint) {
+        ConstraintInterner interner = this.parent == null ? null : this.parent.interner();
+        return interner == null ? constraint : interner.intern(constraint);
+    }
+
+    private boolean reserveBranch() {
+        return this.parent == null || this.parent.reserveBranch();
+    }
+
     private ConstraintBranch copyForDivergence(ConstraintTree parent) {
-        ConstraintBranch copy = new ConstraintBranch(parent);
-        copy.constraints.putAll(this.constraints);
-        this.constraintMetadata.forEach((con, meta) -> copy.constraintMetadata.put(con, meta.copy()));
-        this.typedConstraints.forEach((t, cons) -> copy.typedConstraints.put(t, new HashSet<>(cons)));
-        copy.changes.addAll(this.changes);
+        ConstraintBranch copy = new ConstraintBranch(parent, this.constraints.fork(), this.typedConstraints.fork());
+        this.ownedTypes.clear();
+        copy.constraintMetadata = this.constraintMetadata.fork();
+        this.ownedMetadata = null;
+        copy.changes = this.changes;
+        copy.changesFrom = this.changesFrom;
+        copy.changesTo = this.changesTo;
+        copy.statusCounts = this.statusCounts.clone();
+        copy.constraintsHash = this.constraintsHash;
+        copy.changed = this.changed;
+        copy.visitors = this.visitors;
+        copy.visitedRounds = this.visitedRounds;
         copy.trimmed = this.trimmed;
+        copy.priority = this.priority;
+        if (this.decisions != null) {
+            copy.decisions = this.decisions.fork();
+            copy.origins = this.origins.fork();
+        }
         return copy;
     }
 
+    static ConstraintBranch combine(ConstraintTree parent, List<ConstraintBranch> parts) {
+        ConstraintBranch combined = new ConstraintBranch(parent);
+        for (ConstraintBranch part : parts) {
+            combined.metadata.inheritFrom(part.metadata);
+            part.constraints.forEach(combined::put);
+        }
+        combined.executeChanges();
+
+        for (ConstraintBranch part : parts) {
+            part.constraintMetadata.forEach(combined.constraintMetadata::put);
+            part.ownedMetadata = null;
+        }
+        return combined;
+    }
+
     public void mergeFrom(ConstraintBranch other) {
         this.metadata.inheritFrom(other.metadata());
+        if (other.priority.compareTo(this.priority) < 0) {
+            this.priority = other.priority;
+        }
         other.constraintMetadata.forEach((con, ps) -> {
             if (this.constraints.containsKey(con)) {
                 PropertySet md = this.constraintMetadata.get(con);
                 if (md == null) {
                     this.constraintMetadata.put(con, ps);
                 } else {
-                    md.inheritFrom(ps);
+                    this.writableMetadata(con, md).inheritFrom(ps);
                 }
             }
         });
+        other.ownedMetadata = null;
     }
 
-    //Changes ---------
+    private void addTyped(Constraint constraint) {
+        Class<?> type = constraint.getClass();
+        Set<Constraint> consTyped = this.typedConstraints.get(type);
+        if (consTyped != null && consTyped.contains(constraint)) return;
 
-    private void addMetadata(Constraint constraint, PropertySet ps) {
-        this.change(branch -> {
-            PropertySet md = branch.constraintMetadata.get(constraint);
-            if (md == null) {
-                branch.constraintMetadata.put(constraint, ps);
+        if (consTyped == null || !this.ownedTypes.contains(type)) {
+            //Buckets are shared with forks of this branch until written to
+            consTyped = consTyped == null ? new LinkedHashSet<>() : new LinkedHashSet<>(consTyped);
+            this.typedConstraints.put(type, consTyped);
+            this.ownedTypes.add(type);
+        }
+        consTyped.add(constraint);
+    }
+
+    private void removeTyped(Constraint constraint) {
+        Class<?> type = constraint.getClass();
+        Set<Constraint> consTyped = this.typedConstraints.get(type);
+        if (consTyped != null && consTyped.contains(constraint)) {
+            if (consTyped.size() == 1) {
+                this.typedConstraints.remove(type);
+                this.ownedTypes.remove(type);
             } else {
-                md.inheritFrom(ps);
+                if (!this.ownedTypes.contains(type)) {
+                    consTyped = new LinkedHashSet<>(consTyped);
+                    this.typedConstraints.put(type, consTyped);
+                    this.ownedTypes.add(type);
+                }
+                consTyped.remove(constraint);
             }
-            return false;
-        });
+        }
+    }
+
+    //Changes ---------
+
+    private void addMetadata(Constraint constraint, PropertySet ps) {
+        this.change(ChangeLog.ADD_METADATA, constraint, ps);
     }
 
     public ConstraintBranch attachMetadata(Constraint constraint, Object o) {
-        this.change(branch -> {
-            PropertySet md = branch.constraintMetadata.get(constraint);
-            if (md != null) {
-                md.attach(o);
-            }
-            return false;
-        });
+        this.change(ChangeLog.ATTACH_METADATA, constraint, o);
         return this;
     }
 
     public ConstraintBranch removeMetadata(Constraint constraint, Object o) {
-        this.change(branch -> {
-            PropertySet md = branch.constraintMetadata.get(constraint);
-            if (md != null) {
-                md.remove(o);
-            }
-            return false;
-        });
+        this.change(ChangeLog.REMOVE_METADATA, constraint, o);
         return this;
     }
 
@@ -323,23 +964,14 @@ public class ConstraintBranch implements SimpleName {
     }
 
     public ConstraintBranch put(Constraint constraint, Constraint.Status status) {
-        this.change(branch -> {
-            Constraint.Status current = branch.constraints.get(constraint);
-            branch.constraints.put(constraint, status);
-            branch.typedConstraints.computeIfAbsent(constraint.getClass(), k -> new LinkedHashSet<>()).add(constraint);
-            if (status == Constraint.Status.FALSE) branch.trimmed = true;
-            return current == null || current != status;
-        });
+        Constraint interned = this.intern(constraint);
+        this.change(ChangeLog.PUT, interned, status);
         return this;
     }
 
     public ConstraintBranch add(Constraint constraint, Constraint.Status status) {
-        this.change(branch -> {
-            Object prev = branch.constraints.putIfAbsent(constraint, status);
-            branch.typedConstraints.computeIfAbsent(constraint.getClass(), k -> new LinkedHashSet<>()).add(constraint);
-            if (prev == null && status == Constraint.Status.FALSE) branch.trimmed = true;
-            return prev == null;
-        });
+        Constraint interned = this.intern(constraint);
+        this.change(ChangeLog.ADD, interned, status);
         return this;
     }
 
@@ -348,7 +980,23 @@ public class ConstraintBranch implements SimpleName {
     }
 
     public ConstraintBranch reduce(Constraint result, Constraint.Status status, Constraint... parents) {
-        return this.reduce(result, status, new PropertySet(), parents);
+        //Only allocate once a parent actually has metadata, the shared empty set stands in otherwise
+        PropertySet meta = null;
+        for (Constraint con : parents) {
+            PropertySet md = this.constraintMetadata.get(con);
+            if (md != null && !md.all(Object.class).isEmpty()) {
+                if (meta == null) {
+                    meta = new PropertySet();
+                }
+                meta.inheritFrom(md);
+            }
+            this.drop(con);
+        }
+
+        this.set(result, status);
+        this.addMetadata(result, meta == null ? emptyProperties : meta);
+
+        return this;
     }
 
     public ConstraintBranch reduce(Constraint result, Constraint.Status status, PropertySet meta, Constraint... parents) {
@@ -367,35 +1015,14 @@ public class ConstraintBranch implements SimpleName {
     }
 
     public ConstraintBranch drop(Constraint constraint) {
-        this.change(branch -> {
-            Constraint.Status prev = branch.constraints.remove(constraint);
-            branch.constraintMetadata.remove(constraint);
-
-            Set<Constraint> consTyped = branch.typedConstraints.get(constraint.getClass());
-            if (consTyped != null) {
-                consTyped.remove(constraint);
-                if (consTyped.isEmpty()) {
-                    branch.typedConstraints.remove(constraint.getClass());
-                }
-            }
-
-            if (prev == Constraint.Status.FALSE) branch.trimmed = branch.status() == Constraint.Status.FALSE;
-            return prev != null;
-        });
+        this.change(ChangeLog.DROP, constraint, null);
         return this;
     }
 
 
     public ConstraintBranch set(Constraint constraint, Constraint.Status status) {
-        this.change(branch -> {
-            Constraint.Status curr = branch.constraints.get(constraint);
-            if (curr == null || curr != status) {
-                if (status == Constraint.Status.FALSE) branch.trimmed = true;
-                branch.constraints.put(constraint, status);
-                return true;
-            }
-            return false;
-        });
+        Constraint interned = this.intern(constraint);
+        this.change(ChangeLog.SET, interned, status);
         return this;
     }
 
@@ -434,11 +1061,13 @@ public class ConstraintBranch implements SimpleName {
         if (this == object) return true;
         if (object == null || getClass() != object.getClass()) return false;
         ConstraintBranch that = (ConstraintBranch) object;
-        return Objects.equals(constraints.keySet(), that.constraints.keySet());
+        return this.constraintsHash == that.constraintsHash && this.constraints.size() == that.constraints.size() &&
+                Objects.equals(constraints.keySet(), that.constraints.keySet());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(constraints.keySet());
+        //Same value as Objects.hash(constraints.keySet()), kept up to date as constraints are added and dropped
+        return 31 + this.constraintsHash;
     }
 }
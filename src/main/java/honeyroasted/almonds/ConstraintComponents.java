@@ -0,0 +1,66 @@
+package honeyroasted.almonds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+final class ConstraintComponents {
+
+    private ConstraintComponents() {
+    }
+
+    //Constraints sharing a key end up in the same component, constraints without keys all share one component
+    static List<List<Constraint>> split(List<Constraint> constraints, Function<Constraint, ? extends Collection<?>> keys) {
+        int[] parents = new int[constraints.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+
+        Map<Object, Integer> owners = new HashMap<>();
+        int keyless = -1;
+        for (int i = 0; i < parents.length; i++) {
+            Collection<?> constraintKeys = keys.apply(constraints.get(i));
+            if (constraintKeys.isEmpty()) {
+                if (keyless < 0) {
+                    keyless = i;
+                } else {
+                    union(parents, keyless, i);
+                }
+            }
+
+            for (Object key : constraintKeys) {
+                Integer owner = owners.putIfAbsent(key, i);
+                if (owner != null) {
+                    union(parents, owner, i);
+                }
+            }
+        }
+
+        Map<Integer, List<Constraint>> components = new LinkedHashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            components.computeIfAbsent(find(parents, i), k -> new ArrayList<>()).add(constraints.get(i));
+        }
+        return components.isEmpty() ? List.of(List.of()) : new ArrayList<>(components.values());
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) {
+            //The earlier constraint stays the root, keeping components in binding order
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
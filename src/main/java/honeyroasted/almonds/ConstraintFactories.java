@@ -0,0 +1,87 @@
+package honeyroasted.almonds;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public final class ConstraintFactories {
+    private static final Map<Class<?>, Function<List<?>, ? extends Constraint>> registered = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Function<List<?>, ? extends Constraint>> factories = new ClassValue<>() {
+        @Override
+        protected Function<List<?>, ? extends Constraint> computeValue(Class<?> type) {
+            Function<List<?>, ? extends Constraint> factory = registered.get(type);
+            return factory != null ? factory : resolve(type);
+        }
+    };
+
+    private ConstraintFactories() {
+    }
+
+    public static <T extends Constraint> void register(Class<T> type, Function<List<?>, T> factory) {
+        registered.put(type, factory);
+        factories.remove(type);
+    }
+
+    public static <T extends Constraint> T create(Class<?> type, List<?> parameters) {
+        return (T) factories.get(type).apply(parameters);
+    }
+
+    private static Function<List<?>, ? extends Constraint> resolve(Class<?> type) {
+        Constructor<?>[] constructors = type.getConstructors();
+        if (constructors.length == 0) {
+            return parameters -> {
+                throw new IllegalStateException("Could not create new instance of " + type.getName() + ", no public constructor");
+            };
+        }
+
+        Constructor<?> constructor = constructors[0];
+        for (Constructor<?> candidate : constructors) {
+            if (candidate.isAnnotationPresent(Constraint.Factory.class)) {
+                constructor = candidate;
+                break;
+            }
+        }
+
+        int arity = constructor.getParameterCount();
+        MethodHandle handle;
+        try {
+            constructor.setAccessible(true);
+            handle = MethodHandles.lookup().unreflectConstructor(constructor).asFixedArity();
+            //Constraints have at most three parameters, those get a handle typed to their arity so calls skip the spreader
+            handle = arity <= 3 ?
+                    handle.asType(MethodType.genericMethodType(arity).changeReturnType(Constraint.class)) :
+                    handle.asSpreader(Object[].class, arity).asType(MethodType.methodType(Constraint.class, Object[].class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            return parameters -> {
+                throw new IllegalStateException("Could not create new instance of " + type.getName(), e);
+            };
+        }
+
+        MethodHandle exact = handle;
+        return parameters -> {
+            if (parameters.size() != arity) {
+                throw new IllegalArgumentException("Expected " + arity + " parameters for " + type.getName() + ", got " + parameters.size());
+            }
+
+            try {
+                return switch (arity) {
+                    case 0 -> (Constraint) exact.invokeExact();
+                    case 1 -> (Constraint) exact.invokeExact((Object) parameters.get(0));
+                    case 2 -> (Constraint) exact.invokeExact((Object) parameters.get(0), (Object) parameters.get(1));
+                    case 3 -> (Constraint) exact.invokeExact((Object) parameters.get(0), (Object) parameters.get(1), (Object) parameters.get(2));
+                    default -> (Constraint) exact.invokeExact(parameters.toArray());
+                };
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create new instance of " + type.getName(), e);
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package honeyroasted.almonds;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public final class ConstraintInterner {
+    private static final ConstraintInterner global = new ConstraintInterner();
+
+    //Equal constraints always land in the same stripe, so parallel solves only contend when their hashes collide
+    private static final int STRIPES = 32;
+
+    private final Map<Constraint, WeakReference<Constraint>>[] stripes = new Map[STRIPES];
+
+    public ConstraintInterner() {
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new WeakHashMap<>();
+        }
+    }
+
+    public static ConstraintInterner global() {
+        return global;
+    }
+
+    public <T extends Constraint> T intern(T constraint) {
+        int hash = constraint.hashCode();
+        Map<Constraint, WeakReference<Constraint>> interned = this.stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+
+        synchronized (interned) {
+            WeakReference<Constraint> ref = interned.get(constraint);
+            Constraint existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return (T) existing;
+            }
+
+            //Instances interned by the same interner are only ever equal to themselves
+            if (constraint instanceof Constraint.Unary<?> unary && unary.interner == null) {
+                unary.interner = this;
+            } else if (constraint instanceof Constraint.Binary<?, ?> binary && binary.interner == null) {
+                binary.interner = this;
+            } else if (constraint instanceof Constraint.Trinary<?, ?, ?> trinary && trinary.interner == null) {
+                trinary.interner = this;
+            }
+
+            interned.put(constraint, new WeakReference<>(constraint));
+            return constraint;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<Constraint, WeakReference<Constraint>> interned : this.stripes) {
+            synchronized (interned) {
+                size += interned.size();
+            }
+        }
+        return size;
+    }
+}
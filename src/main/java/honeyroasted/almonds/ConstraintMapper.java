@@ -3,12 +3,65 @@ package honeyroasted.almonds;
 import honeyroasted.collect.property.PropertySet;
 
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 
 public interface ConstraintMapper extends Consumer<ConstraintBranch> {
 
+    default List<Trigger> triggers() {
+        return Collections.emptyList();
+    }
+
+    default void acceptChanged(ConstraintBranch branch, int since) {
+        this.accept(branch);
+    }
+
+    private static Collection<Constraint> matching(ConstraintBranch branch, Trigger trigger) {
+        if (trigger.strict()) {
+            return branch.constraintsByType(trigger.type());
+        }
+
+        Collection<Constraint> result = null;
+        for (Class<?> type : ConstraintTypes.supertypes(trigger.type())) {
+            Set<Constraint> typed = branch.constraintsByType(type);
+            if (!typed.isEmpty()) {
+                if (result == null) {
+                    result = typed;
+                } else {
+                    if (!(result instanceof ArrayList)) {
+                        result = new ArrayList<>(result);
+                    }
+                    result.addAll(typed);
+                }
+            }
+        }
+        return result == null ? Collections.emptySet() : result;
+    }
+
+    private static Collection<Constraint> matching(Set<Constraint> constraints, Trigger trigger) {
+        List<Constraint> result = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (trigger.matches(constraint.getClass())) {
+                result.add(constraint);
+            }
+        }
+        return result;
+    }
+
+    record Trigger(Class<?> type, boolean strict) {
+
+        public boolean matches(Class<?> constraintType) {
+            return this.strict ? this.type == constraintType : ConstraintTypes.isAssignable(this.type, constraintType);
+        }
+
+    }
+
     class True extends Unary<Constraint.True> {
         @Override
         protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Constraint.True constraint, Constraint.Status status) {
@@ -51,21 +104,29 @@ public interface ConstraintMapper extends Consumer<ConstraintBranch> {
     abstract class Unary<T extends Constraint> implements ConstraintMapper {
         private Class<T> type;
         private boolean strict;
+        private List<Trigger> triggers;
 
         public Unary(Class<T> type, boolean strict) {
             this.type = type;
             this.strict = strict;
+            this.triggers = List.of(new Trigger(type, strict));
         }
 
         public Unary(boolean strict) {
             this.type = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
             this.strict = strict;
+            this.triggers = List.of(new Trigger(this.type, strict));
         }
 
         public Unary() {
             this(true);
         }
 
+        @Override
+        public List<Trigger> triggers() {
+            return this.triggers;
+        }
+
         protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, T constraint, Constraint.Status status) {
             return true;
         }
@@ -74,54 +135,73 @@ public interface ConstraintMapper extends Consumer<ConstraintBranch> {
 
         @Override
         public final void accept(ConstraintBranch branch) {
+            this.acceptAll(branch, matching(branch, this.triggers.get(0)));
+        }
+
+        @Override
+        public final void acceptChanged(ConstraintBranch branch, int since) {
+            Set<Constraint> changed = branch.changedSince(since);
+            if (!changed.isEmpty()) {
+                this.acceptAll(branch, matching(changed, this.triggers.get(0)));
+            }
+        }
+
+        private void acceptAll(ConstraintBranch branch, Collection<Constraint> constraints) {
             PropertySet allContext = branch.parent().metadata();
             PropertySet branchContext = branch.metadata();
 
-            if (this.strict) {
-                for (Constraint constraint : branch.constraintsByType(this.type)) {
-                    T con = (T) constraint;
-                    Constraint.Status status = branch.status(constraint);
-                    if (this.filter(allContext, branchContext, branch, con, status)) {
-                        this.accept(allContext, branchContext, branch, con, status);
-                    }
-                }
-            } else {
-                for (Map.Entry<Class<?>, Set<Constraint>> typedConstraint : branch.typeConstraints().entrySet()) {
-                    if (typedConstraint.getKey().isAssignableFrom(this.type)) {
-                        for (Constraint constraint : typedConstraint.getValue()) {
-                            T con = (T) constraint;
-                            Constraint.Status status = branch.status(constraint);
-                            if (this.filter(allContext, branchContext, branch, con, status)) {
-                                this.accept(allContext, branchContext, branch, con, status);
-                            }
-                        }
-                    }
+            boolean learning = branch.learning();
+            for (Constraint constraint : constraints) {
+                T con = (T) constraint;
+                Constraint.Status status = branch.status(constraint);
+                if (this.filter(allContext, branchContext, branch, con, status)) {
+                    if (learning) branch.causes(con);
+                    this.accept(allContext, branchContext, branch, con, status);
                 }
             }
+            branch.clearCauses();
         }
     }
 
     abstract class Binary<L extends Constraint, R extends Constraint> implements ConstraintMapper {
+        protected static final Object ANY_KEY = new Object();
+
         private Class<L> left;
         private Class<R> right;
         private boolean strict;
+        private List<Trigger> triggers;
 
         public Binary(Class<L> left, Class<R> right, boolean strict) {
             this.left = left;
             this.right = right;
             this.strict = strict;
+            this.triggers = List.of(new Trigger(left, strict), new Trigger(right, strict));
         }
 
         public Binary(boolean strict) {
             this.left = (Class<L>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
             this.right = (Class<R>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[1];
             this.strict = strict;
+            this.triggers = List.of(new Trigger(this.left, strict), new Trigger(this.right, strict));
         }
 
         public Binary() {
             this(true);
         }
 
+        @Override
+        public List<Trigger> triggers() {
+            return this.triggers;
+        }
+
+        protected Object leftKey(L constraint) {
+            return ANY_KEY;
+        }
+
+        protected Object rightKey(R constraint) {
+            return ANY_KEY;
+        }
+
         protected boolean filterLeft(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, L constraint, Constraint.Status status) {
             return true;
         }
@@ -138,51 +218,80 @@ public interface ConstraintMapper extends Consumer<ConstraintBranch> {
 
         @Override
         public final void accept(ConstraintBranch branch) {
+            this.acceptPairs(branch, matching(branch, this.triggers.get(0)), matching(branch, this.triggers.get(1)), Collections.emptySet());
+        }
+
+        @Override
+        public final void acceptChanged(ConstraintBranch branch, int since) {
+            Set<Constraint> changed = branch.changedSince(since);
+            if (changed.isEmpty()) return;
+
+            Collection<Constraint> changedLeft = matching(changed, this.triggers.get(0));
+            Collection<Constraint> changedRight = matching(changed, this.triggers.get(1));
+
+            //Pairs with a changed left side, then pairs where only the right side changed
+            if (!changedLeft.isEmpty()) {
+                this.acceptPairs(branch, changedLeft, matching(branch, this.triggers.get(1)), Collections.emptySet());
+            }
+            if (!changedRight.isEmpty()) {
+                this.acceptPairs(branch, matching(branch, this.triggers.get(0)), changedRight, changed);
+            }
+        }
+
+        private void acceptPairs(ConstraintBranch branch, Collection<Constraint> lefts, Collection<Constraint> rights, Set<Constraint> skipLeft) {
+            if (lefts.isEmpty() || rights.isEmpty()) return;
+
             PropertySet allContext = branch.parent().metadata();
             PropertySet branchContext = branch.metadata();
 
-            if (this.strict) {
-                for (Constraint leftCons : branch.constraintsByType(this.left)) {
-                    L left = (L) leftCons;
-                    Constraint.Status leftStat = branch.status(leftCons);
-                    if (this.filterLeft(allContext, branchContext, branch, left, leftStat)) {
-                        for (Constraint rightCons : branch.constraintsByType(this.right)) {
-                            R right = (R) rightCons;
-                            Constraint.Status rightStat = branch.status(rightCons);
-                            if (this.filterRight(allContext, branchContext, branch, right, rightStat)) {
-                                if (this.filter(allContext, branchContext, branch, left, leftStat, right, rightStat)) {
-                                    accept(allContext, branchContext, branch, left, leftStat, right, rightStat);
-                                }
-                            }
-                        }
+            Map<Object, List<Constraint>> rightsByKey = null;
+            List<Constraint> anyRights = new ArrayList<>();
+            for (Constraint rightCons : rights) {
+                Object key = this.rightKey((R) rightCons);
+                if (key == ANY_KEY) {
+                    anyRights.add(rightCons);
+                } else {
+                    if (rightsByKey == null) {
+                        rightsByKey = new HashMap<>();
                     }
+                    rightsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(rightCons);
                 }
-            } else {
-                for (Map.Entry<Class<?>, Set<Constraint>> leftTypedConstraint : branch.typeConstraints().entrySet()) {
-                    if (leftTypedConstraint.getKey().isAssignableFrom(this.left)) {
-                        for (Constraint leftCons : leftTypedConstraint.getValue()) {
-                            L left = (L) leftCons;
-                            Constraint.Status leftStat = branch.status(leftCons);
-                            if (this.filterLeft(allContext, branchContext, branch, left, leftStat)) {
-                                for (Map.Entry<Class<?>, Set<Constraint>> rightTypedConstraint : branch.typeConstraints().entrySet()) {
-                                    if (rightTypedConstraint.getKey().isAssignableFrom(this.right)) {
-                                        for (Constraint rightCons : rightTypedConstraint.getValue()) {
-                                            R right = (R) rightCons;
-                                            Constraint.Status rightStat = branch.status(rightCons);
-                                            if (this.filterRight(allContext, branchContext, branch, right, rightStat)) {
-                                                if (this.filter(allContext, branchContext, branch, left, leftStat, right, rightStat)) {
-                                                    accept(allContext, branchContext, branch, left, leftStat, right, rightStat);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
+            }
+
+            for (Constraint leftCons : lefts) {
+                if (skipLeft.contains(leftCons)) continue;
+
+                L left = (L) leftCons;
+                Constraint.Status leftStat = branch.status(leftCons);
+                if (this.filterLeft(allContext, branchContext, branch, left, leftStat)) {
+                    if (rightsByKey == null) {
+                        this.acceptRights(allContext, branchContext, branch, left, leftStat, rights);
+                    } else {
+                        Object key = this.leftKey(left);
+                        if (key == ANY_KEY) {
+                            this.acceptRights(allContext, branchContext, branch, left, leftStat, rights);
+                        } else {
+                            this.acceptRights(allContext, branchContext, branch, left, leftStat, rightsByKey.getOrDefault(key, Collections.emptyList()));
+                            this.acceptRights(allContext, branchContext, branch, left, leftStat, anyRights);
                         }
                     }
                 }
             }
+            branch.clearCauses();
+        }
 
+        private void acceptRights(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, L left, Constraint.Status leftStat, Collection<Constraint> rights) {
+            boolean learning = !rights.isEmpty() && branch.learning();
+            for (Constraint rightCons : rights) {
+                R right = (R) rightCons;
+                Constraint.Status rightStat = branch.status(rightCons);
+                if (this.filterRight(allContext, branchContext, branch, right, rightStat)) {
+                    if (this.filter(allContext, branchContext, branch, left, leftStat, right, rightStat)) {
+                        if (learning) branch.causes(left, right);
+                        accept(allContext, branchContext, branch, left, leftStat, right, rightStat);
+                    }
+                }
+            }
         }
     }
 
@@ -4,12 +4,25 @@ import honeyroasted.almonds.applier.ConstraintMapperApplier;
 import honeyroasted.collect.property.PropertySet;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class ConstraintSolver {
     private List<ConstraintMapperApplier> appliers;
     private PropertySet context = new PropertySet();
+    private boolean incremental;
+    private ConstraintInterner interner;
+    private SolveBudget budget;
+    private SolverInstrumentation instrumentation;
+    private boolean learning;
+    private SolveCache cache;
+    private boolean parallelComponents;
+    private Function<Constraint, ? extends Collection<?>> componentKeys;
+    private ForkJoinPool pool;
 
     public ConstraintSolver(List<ConstraintMapperApplier> appliers) {
         this.appliers = appliers;
@@ -27,23 +40,92 @@ public class ConstraintSolver {
         return this;
     }
 
+    public ConstraintSolver incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public ConstraintSolver interner(ConstraintInterner interner) {
+        this.interner = interner;
+        return this;
+    }
+
+    public ConstraintSolver budget(SolveBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    public ConstraintSolver instrumentation(SolverInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+        return this;
+    }
+
+    //Trimmed branches are remembered as nogoods, and later branches repeating one are trimmed as soon as they are created.
+    //Mappers must be pure: what they change may only depend on the constraints they name as causes, which Unary and Binary
+    //mappers do for the constraints they are given, and never on context, metadata or outside state
+    public ConstraintSolver learning(boolean learning) {
+        this.learning = learning;
+        return this;
+    }
+
+    public ConstraintSolver cache(SolveCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public ConstraintSolver parallelComponents(boolean parallelComponents) {
+        this.parallelComponents = parallelComponents;
+        return this;
+    }
+
+    //Lets solveComponents split the bound constraints, constraints that share a key end up in the same component. Mappers
+    //must never relate constraints that share no key, directly or through the constraints they add. Without keys
+    //solveComponents solves a single component, and solve() never splits
+    public ConstraintSolver componentKeys(Function<Constraint, ? extends Collection<?>> componentKeys) {
+        this.componentKeys = componentKeys;
+        return this;
+    }
+
+    //The pool PARALLEL appliers dispatch branches on, without one they use the common pool
+    public ConstraintSolver pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
     public ConstraintTree solve() {
         return this.solve(new PropertySet());
     }
 
     public ConstraintTree solve(PropertySet context) {
-        ConstraintTree tree = new ConstraintTree();
-        tree.metadata().inheritFrom(context);
-        tree.metadata().inheritFrom(this.context);
+        return this.compile().solve(context);
+    }
 
-        ConstraintBranch branch = new ConstraintBranch(tree);
-        this.constraints.forEach(branch::add);
-        tree.addBranch(branch);
+    public SolutionIterator solveIterator() {
+        return this.solveIterator(new PropertySet());
+    }
 
-        for (ConstraintMapperApplier applier : this.appliers) {
-            applier.accept(tree);
-        }
+    public SolutionIterator solveIterator(PropertySet context) {
+        return this.compile().solveIterator(Collections.emptyList(), context);
+    }
+
+    public Stream<ConstraintBranch> solveStream() {
+        return this.solveStream(new PropertySet());
+    }
+
+    public Stream<ConstraintBranch> solveStream(PropertySet context) {
+        return this.compile().solveStream(context);
+    }
+
+    public ComponentSolution solveComponents() {
+        return this.solveComponents(new PropertySet());
+    }
+
+    public ComponentSolution solveComponents(PropertySet context) {
+        return this.compile().solveComponents(context);
+    }
 
-        return tree;
+    public CompiledConstraintSolver compile() {
+        return new CompiledConstraintSolver(this.appliers, this.constraints, this.context, this.incremental, this.interner, this.budget, this.instrumentation, this.learning, this.cache,
+                this.parallelComponents, this.componentKeys, this.pool);
     }
 }
@@ -1,15 +1,22 @@
 package honeyroasted.almonds;
 
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
 import honeyroasted.collect.property.PropertySet;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -18,21 +25,245 @@ public class ConstraintTree implements SimpleName {
 
     private Set<ConstraintBranch> active = new LinkedHashSet<>();
     private Map<ConstraintBranch, ConstraintBranch> branches = new LinkedHashMap<>();
+    private Map<Constraint.Status, Set<ConstraintBranch>> branchesByStatus = new EnumMap<>(Constraint.Status.class);
+
+    private boolean incremental;
+    private int round;
+    private ConstraintInterner interner;
+    private ForkJoinPool pool;
+
+    private SolverInstrumentation instrumentation;
+    private Nogoods nogoods;
+    private boolean frozen;
+    private List<ConstraintMapperApplier> appliers;
+
+    private SolveBudget budget;
+    private int budgetRound;
+    private long deadline;
+    private volatile SolveBudget.Exhaustion exhausted;
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    public ConstraintTree() {
+        //Every bucket exists up front, so reading a shared tree never writes to it
+        for (Constraint.Status status : Constraint.Status.values()) {
+            this.branchesByStatus.put(status, new LinkedHashSet<>());
+        }
+    }
+
+    public boolean incremental() {
+        return this.incremental;
+    }
+
+    public ConstraintTree incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public int round() {
+        return this.round;
+    }
+
+    public ConstraintInterner interner() {
+        return this.interner;
+    }
+
+    public ConstraintTree interner(ConstraintInterner interner) {
+        this.interner = interner;
+        return this;
+    }
+
+    public ForkJoinPool pool() {
+        return this.pool;
+    }
+
+    public ConstraintTree pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    public SolverInstrumentation instrumentation() {
+        return this.instrumentation;
+    }
+
+    public ConstraintTree instrumentation(SolverInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+        return this;
+    }
+
+    public boolean learning() {
+        return this.nogoods != null;
+    }
+
+    //Learned nogoods are only sound if mappers decide using nothing but the constraints they are given. A change a mapper
+    //makes without naming its causes is never taken as a decision, so a trim it causes is not learned from
+    public ConstraintTree learning(boolean learning) {
+        if (!learning) {
+            this.nogoods = null;
+        } else if (this.nogoods == null) {
+            this.nogoods = new Nogoods();
+        }
+        return this;
+    }
+
+    public Nogoods nogoods() {
+        return this.nogoods;
+    }
+
+    public boolean frozen() {
+        return this.frozen;
+    }
+
+    //A frozen tree can be shared, any further change to it or its branches fails
+    public ConstraintTree freeze() {
+        this.frozen = true;
+        return this;
+    }
+
+    //Branches are copied on write, so the copy and this tree can be changed independently. Copying writes to this tree's
+    //branches while it forks their storage, so it must not run alongside any other use of this tree
+    public ConstraintTree copy() {
+        ConstraintTree copy = new ConstraintTree();
+        copy.incremental = this.incremental;
+        copy.interner = this.interner;
+        copy.pool = this.pool;
+        copy.instrumentation = this.instrumentation;
+        copy.appliers = this.appliers;
+        this.copyInto(copy);
+        copy.budget = this.budget;
+        copy.budgetRound = this.budgetRound;
+        copy.deadline = this.deadline;
+        return copy;
+    }
+
+    //Copies the branches and what was learned building them into the target, which keeps its own settings. The target's
+    //budget is counted from the copied round, as if it had just been set
+    ConstraintTree copyInto(ConstraintTree target) {
+        target.metadata = this.metadata.copy();
+        target.round = this.round;
+        target.nogoods = this.nogoods == null ? null : this.nogoods.copy();
+        target.exhausted = this.exhausted;
+
+        target.branches.clear();
+        target.active.clear();
+        target.branchesByStatus.values().forEach(Set::clear);
+        for (ConstraintBranch branch : this.branches.keySet()) {
+            ConstraintBranch branchCopy = branch.copy(target);
+            target.branches.put(branchCopy, branchCopy);
+            target.index(branchCopy);
+            if (this.active.contains(branch)) {
+                target.active.add(branchCopy);
+            }
+        }
+        return target.budget(target.budget);
+    }
+
+    public List<ConstraintMapperApplier> appliers() {
+        return this.appliers;
+    }
+
+    public ConstraintTree appliers(List<ConstraintMapperApplier> appliers) {
+        this.appliers = appliers;
+        return this;
+    }
+
+    public ConstraintTree extend(Constraint... constraints) {
+        return this.extend(List.of(constraints));
+    }
+
+    //Resumes from the current fixpoint, with incremental evaluation mappers only revisit what the new constraints changed
+    public ConstraintTree extend(Collection<? extends Constraint> constraints) {
+        this.checkNotFrozen();
+        if (this.appliers == null) {
+            throw new IllegalStateException("Constraint tree has no appliers to resume");
+        }
+
+        if (this.branches.isEmpty()) {
+            this.addBranch(new ConstraintBranch(this));
+        }
+        for (ConstraintBranch branch : this.branches.keySet()) {
+            if (!branch.trimmed()) {
+                constraints.forEach(branch::add);
+            }
+        }
+
+        //The extension gets a budget of its own, counted from here
+        this.exhausted = null;
+        this.budget(this.budget);
+
+        this.executeChanges();
+        for (ConstraintMapperApplier applier : this.appliers) {
+            if (!this.withinBudget()) break;
+            applier.accept(this);
+        }
+        return this;
+    }
+
+    public SolveBudget budget() {
+        return this.budget;
+    }
+
+    public ConstraintTree budget(SolveBudget budget) {
+        this.budget = budget;
+        this.budgetRound = this.round;
+        if (budget != null && budget.maxTime() != null) {
+            this.deadline = System.nanoTime() + budget.maxTime().toNanos();
+        }
+        return this;
+    }
+
+    public Optional<SolveBudget.Exhaustion> exhausted() {
+        return Optional.ofNullable(this.exhausted);
+    }
+
+    public boolean withinBudget() {
+        if (this.budget == null) return true;
+        if (this.exhausted != null) return false;
+
+        //Once a limit is hit the tree stays exhausted, appliers stop and leave the partial tree as is
+        if (this.budget.cancellation() != null && this.budget.cancellation().cancelled()) {
+            this.exhausted = SolveBudget.Exhaustion.CANCELLED;
+        } else if (this.branches.size() > this.budget.maxBranches()) {
+            this.exhausted = SolveBudget.Exhaustion.BRANCHES;
+        } else if (this.round - this.budgetRound >= this.budget.maxRounds()) {
+            this.exhausted = SolveBudget.Exhaustion.ROUNDS;
+        } else if (this.budget.maxTime() != null && System.nanoTime() - this.deadline >= 0) {
+            this.exhausted = SolveBudget.Exhaustion.TIME;
+        }
+        return this.exhausted == null;
+    }
+
+    //Divergence can multiply the branch count within a single round, so every branch it builds is counted against the
+    //budget before the round adds it to the tree
+    boolean reserveBranch() {
+        if (this.budget == null) return true;
+
+        if (this.exhausted == null && (long) this.branches.size() + this.reserved.incrementAndGet() > this.budget.maxBranches()) {
+            this.exhausted = SolveBudget.Exhaustion.BRANCHES;
+        }
+        return this.withinBudget();
+    }
 
     public int numBranches() {
         return this.branches.size();
     }
 
     public Set<ConstraintBranch> validBranches() {
-        return this.branches(cn -> cn.status() == Constraint.Status.TRUE);
+        return this.branches(Constraint.Status.TRUE);
     }
 
     public Set<ConstraintBranch> unexploredBranches() {
-        return this.branches(cn -> cn.status().isUnknown());
+        Set<ConstraintBranch> result = new LinkedHashSet<>(this.statusBucket(Constraint.Status.ASSUMED));
+        result.addAll(this.statusBucket(Constraint.Status.UNKNOWN));
+        return Collections.unmodifiableSet(result);
     }
 
     public Set<ConstraintBranch> invalidBranches() {
-        return this.branches(cn -> cn.status() == Constraint.Status.FALSE);
+        return this.branches(Constraint.Status.FALSE);
+    }
+
+    //Snapshots, the buckets keep changing as branches move between statuses
+    public Set<ConstraintBranch> branches(Constraint.Status status) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(this.statusBucket(status)));
     }
 
     public Set<ConstraintBranch> branches(Predicate<ConstraintBranch> filter) {
@@ -54,13 +285,14 @@ public class ConstraintTree implements SimpleName {
     public Constraint.Status status() {
         if (this.branches.isEmpty()) {
             return Constraint.Status.UNKNOWN;
+        } else if (!this.statusBucket(Constraint.Status.TRUE).isEmpty()) {
+            return Constraint.Status.TRUE;
+        } else if (!this.statusBucket(Constraint.Status.ASSUMED).isEmpty()) {
+            return Constraint.Status.ASSUMED;
+        } else if (!this.statusBucket(Constraint.Status.UNKNOWN).isEmpty()) {
+            return Constraint.Status.UNKNOWN;
         } else {
-            Iterator<ConstraintBranch> iter = this.branches.keySet().iterator();
-            Constraint.Status curr = iter.next().status();
-            while (iter.hasNext()) {
-                curr = curr.or(iter.next().status());
-            }
-            return curr;
+            return Constraint.Status.FALSE;
         }
     }
 
@@ -121,7 +353,9 @@ public class ConstraintTree implements SimpleName {
 
     private Map<ConstraintBranch, ConstraintBranch> newBranches = new LinkedHashMap<>();
     public boolean executeChanges() {
+        this.checkNotFrozen();
         boolean modified = false;
+        this.reserved.set(0);
         this.newBranches.clear();
         this.active.clear();
 
@@ -132,44 +366,122 @@ public class ConstraintTree implements SimpleName {
 
             if (branch.diverged()) {
                 iter.remove();
+                this.unindex(branch);
                 for (ConstraintBranch newBranch : branch.divergence()) {
                     newBranch.executeChanges();
-                    addBranch(newBranch, newBranches);
+                    if (this.nogoods != null) {
+                        this.checkNogoods(newBranch);
+                    }
+                    if (this.instrumentation != null) {
+                        this.instrumentation.branchCreated(this, newBranch);
+                        if (newBranch.trimmed()) this.instrumentation.branchTrimmed(this, newBranch);
+                    }
+                    this.addBranch(newBranch, newBranches);
                 }
                 modified = true;
-            } else {
+            } else if (branch.hasChanges()) {
+                //The branch's hash changes along with its constraints, so it must leave the index first
+                this.unindex(branch);
+                boolean wasTrimmed = branch.trimmed();
                 boolean changed = branch.executeChanges();
+                if (!wasTrimmed && branch.trimmed()) {
+                    if (this.nogoods != null) this.learn(branch);
+                    if (this.instrumentation != null) this.instrumentation.branchTrimmed(this, branch);
+                }
                 if (changed) {
                     iter.remove();
-                    addBranch(branch, newBranches);
-                } else if (!branch.trimmed()) {
-                    this.active.add(branch);
+                    this.addBranch(branch, newBranches);
+                } else {
+                    this.index(branch);
+                    if (!branch.trimmed()) {
+                        this.active.add(branch);
+                    }
                 }
                 modified |= changed;
+            } else if (!branch.trimmed()) {
+                this.active.add(branch);
             }
         }
-        newBranches.forEach((k, b) -> addBranch(k, this.branches, this.active));
+        newBranches.forEach((k, b) -> addBranch(k));
 
+        this.round++;
+        if (this.instrumentation != null) {
+            this.instrumentation.roundCompleted(this, modified);
+        }
         return modified;
     }
 
-    public void addBranch(ConstraintBranch branch) {
-        addBranch(branch, this.branches, this.active);
+    //A branch's hash follows its constraints, so it leaves the tree while being rolled back and is then added again
+    public void rollback(ConstraintBranch branch, ConstraintBranch.Mark mark) {
+        this.checkNotFrozen();
+        if (this.branches.get(branch) == branch) {
+            this.branches.remove(branch);
+            this.unindex(branch);
+            this.active.remove(branch);
+        }
+        branch.rollback(mark);
+        this.addBranch(branch);
     }
 
-    private static void addBranch(ConstraintBranch branch, Map<ConstraintBranch, ConstraintBranch> branches, Set<ConstraintBranch> active) {
-        ConstraintBranch prev = branches.putIfAbsent(branch, branch);
+    private void checkNogoods(ConstraintBranch branch) {
+        if (branch.trimmed()) {
+            this.learn(branch);
+        } else if (this.nogoods.matches(branch.decisions())) {
+            //Some earlier branch already failed from a subset of these decisions
+            branch.add(Constraint.FALSE, Constraint.Status.FALSE);
+            branch.executeChanges();
+            this.nogoods.countPruned();
+        }
+    }
+
+    private void learn(ConstraintBranch branch) {
+        Map<Constraint, Constraint.Status> nogood = branch.conflict();
+        if (nogood != null) {
+            this.nogoods.learn(nogood);
+        }
+    }
+
+    public void addBranch(ConstraintBranch branch) {
+        this.checkNotFrozen();
+        ConstraintBranch prev = this.branches.putIfAbsent(branch, branch);
         if (prev != null) {
             prev.mergeFrom(branch);
-        } else if (!branch.trimmed()) {
-            active.add(branch);
+            if (this.instrumentation != null) {
+                this.instrumentation.branchMerged(this, prev);
+            }
+        } else {
+            this.index(branch);
+            if (!branch.trimmed()) {
+                this.active.add(branch);
+            }
+        }
+    }
+
+    void checkNotFrozen() {
+        if (this.frozen) {
+            throw new IllegalStateException("Constraint tree is frozen");
         }
     }
 
-    private static void addBranch(ConstraintBranch branch, Map<ConstraintBranch, ConstraintBranch> branches) {
+    private Set<ConstraintBranch> statusBucket(Constraint.Status status) {
+        return this.branchesByStatus.get(status);
+    }
+
+    private void index(ConstraintBranch branch) {
+        this.statusBucket(branch.status()).add(branch);
+    }
+
+    private void unindex(ConstraintBranch branch) {
+        this.statusBucket(branch.status()).remove(branch);
+    }
+
+    private void addBranch(ConstraintBranch branch, Map<ConstraintBranch, ConstraintBranch> branches) {
         ConstraintBranch prev = branches.putIfAbsent(branch, branch);
         if (prev != null) {
             prev.mergeFrom(branch);
+            if (this.instrumentation != null) {
+                this.instrumentation.branchMerged(this, prev);
+            }
         }
     }
 
@@ -0,0 +1,42 @@
+package honeyroasted.almonds;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public final class ConstraintTypes {
+    //Resolved once per class and stored with the class itself, so unloading a class also drops its entry
+    private static final ClassValue<List<Class<?>>> supertypes = new ClassValue<>() {
+        @Override
+        protected List<Class<?>> computeValue(Class<?> type) {
+            Set<Class<?>> result = new LinkedHashSet<>();
+            Deque<Class<?>> pending = new ArrayDeque<>();
+            pending.add(type);
+            while (!pending.isEmpty()) {
+                Class<?> curr = pending.poll();
+                if (result.add(curr)) {
+                    if (curr.getSuperclass() != null) {
+                        pending.add(curr.getSuperclass());
+                    }
+                    pending.addAll(List.of(curr.getInterfaces()));
+                }
+            }
+            return List.copyOf(result);
+        }
+    };
+
+    private ConstraintTypes() {
+    }
+
+    //The type itself followed by every class and interface it is assignable to
+    public static List<Class<?>> supertypes(Class<?> type) {
+        return supertypes.get(type);
+    }
+
+    //Non-strict mappers match constraints whose class the mapper's type is assignable to
+    public static boolean isAssignable(Class<?> target, Class<?> type) {
+        return supertypes(target).contains(type);
+    }
+}
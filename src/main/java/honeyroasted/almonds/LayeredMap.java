@@ -0,0 +1,218 @@
+package honeyroasted.almonds;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+final class LayeredMap<K, V> extends AbstractMap<K, V> {
+    private static final int MAX_DEPTH = 8;
+
+    private Layer<K, V> base;
+    private LinkedHashMap<K, V> overlay;
+    private Set<K> removed;
+    private int size;
+
+    private final Set<Entry<K, V>> entrySet = new EntrySet();
+
+    LayeredMap() {
+    }
+
+    private LayeredMap(Layer<K, V> base, int size) {
+        this.base = base;
+        this.size = size;
+    }
+
+    LayeredMap<K, V> fork() {
+        if (this.overlay != null || this.removed != null) {
+            this.base = Layer.freeze(this.base, this.overlay, this.removed, this.size);
+            this.overlay = null;
+            this.removed = null;
+        }
+        return new LayeredMap<>(this.base, this.size);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (this.overlay != null) {
+            V value = this.overlay.get(key);
+            if (value != null) return value;
+        }
+        if (this.removed != null && this.removed.contains(key)) return null;
+        return this.base == null ? null : this.base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        V prev = this.get(key);
+        if (this.overlay == null) {
+            this.overlay = new LinkedHashMap<>();
+        }
+        this.overlay.put(key, value);
+        if (prev == null) this.size++;
+        return prev;
+    }
+
+    @Override
+    public V remove(Object key) {
+        V prev = this.get(key);
+        if (prev != null) {
+            if (this.overlay != null) {
+                this.overlay.remove(key);
+            }
+            if (this.base != null && this.base.get(key) != null) {
+                if (this.removed == null) {
+                    this.removed = new HashSet<>();
+                }
+                this.removed.add((K) key);
+            }
+            this.size--;
+        }
+        return prev;
+    }
+
+    @Override
+    public void clear() {
+        this.base = null;
+        this.overlay = null;
+        this.removed = null;
+        this.size = 0;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return this.entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            if (base == null) {
+                return overlay == null ? Collections.emptyIterator() : overlay.entrySet().iterator();
+            }
+            return new LayerIterator<>(base, overlay, removed);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class Layer<K, V> {
+        private final Layer<K, V> base;
+        private final Map<K, V> overlay;
+        private final Set<K> removed;
+        private final int size;
+        private final int depth;
+
+        private Layer(Layer<K, V> base, Map<K, V> overlay, Set<K> removed, int size) {
+            this.base = base;
+            this.overlay = overlay == null ? Collections.emptyMap() : overlay;
+            this.removed = removed == null ? Collections.emptySet() : removed;
+            this.size = size;
+            this.depth = base == null ? 0 : base.depth + 1;
+        }
+
+        static <K, V> Layer<K, V> freeze(Layer<K, V> base, Map<K, V> overlay, Set<K> removed, int size) {
+            if (base != null && base.depth + 1 >= MAX_DEPTH) {
+                LinkedHashMap<K, V> flat = new LinkedHashMap<>();
+                new LayerIterator<>(base, overlay, removed).forEachRemaining(e -> flat.put(e.getKey(), e.getValue()));
+                return new Layer<>(null, flat, null, size);
+            }
+            return new Layer<>(base, overlay, removed, size);
+        }
+
+        V get(Object key) {
+            Layer<K, V> curr = this;
+            while (curr != null) {
+                V value = curr.overlay.get(key);
+                if (value != null) return value;
+                if (curr.removed.contains(key)) return null;
+                curr = curr.base;
+            }
+            return null;
+        }
+
+        Iterator<Entry<K, V>> iterator() {
+            if (this.base == null) {
+                return this.overlay.entrySet().iterator();
+            }
+            return new LayerIterator<>(this.base, this.overlay, this.removed);
+        }
+    }
+
+    private static final class LayerIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Layer<K, V> base;
+        private final Map<K, V> overlay;
+        private final Set<K> removed;
+
+        private Iterator<Entry<K, V>> baseIter;
+        private Iterator<Entry<K, V>> overlayIter;
+        private Entry<K, V> next;
+
+        LayerIterator(Layer<K, V> base, Map<K, V> overlay, Set<K> removed) {
+            this.base = base;
+            this.overlay = overlay == null ? Collections.emptyMap() : overlay;
+            this.removed = removed == null ? Collections.emptySet() : removed;
+            this.baseIter = base.iterator();
+        }
+
+        private Entry<K, V> advance() {
+            while (this.baseIter != null && this.baseIter.hasNext()) {
+                Entry<K, V> entry = this.baseIter.next();
+                K key = entry.getKey();
+                if (this.removed.contains(key)) continue;
+
+                V value = this.overlay.get(key);
+                return value == null ? entry : new SimpleImmutableEntry<>(key, value);
+            }
+
+            if (this.overlayIter == null) {
+                this.baseIter = null;
+                this.overlayIter = this.overlay.entrySet().iterator();
+            }
+            while (this.overlayIter.hasNext()) {
+                Entry<K, V> entry = this.overlayIter.next();
+                K key = entry.getKey();
+                //Keys that were visible in the base were already returned in their original position
+                if (!this.removed.contains(key) && this.base.get(key) != null) continue;
+                return entry;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next == null) {
+                this.next = this.advance();
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!this.hasNext()) throw new NoSuchElementException();
+            Entry<K, V> result = this.next;
+            this.next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package honeyroasted.almonds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class Nogoods {
+    //Each nogood is filed under one of its decisions, a branch can only match nogoods filed under a decision it made
+    private final Map<Constraint, List<Map<Constraint, Constraint.Status>>> watched = new HashMap<>();
+    private boolean contradiction;
+    private int size;
+    private long pruned;
+
+    Nogoods copy() {
+        Nogoods copy = new Nogoods();
+        this.watched.forEach((watch, nogoods) -> copy.watched.put(watch, new ArrayList<>(nogoods)));
+        copy.contradiction = this.contradiction;
+        copy.size = this.size;
+        copy.pruned = this.pruned;
+        return copy;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long pruned() {
+        return this.pruned;
+    }
+
+    public boolean learn(Map<Constraint, Constraint.Status> nogood) {
+        //Skip nogoods already covered by a smaller one
+        if (this.matches(nogood)) return false;
+
+        if (nogood.isEmpty()) {
+            this.contradiction = true;
+        } else {
+            Constraint watch = nogood.keySet().iterator().next();
+            this.watched.computeIfAbsent(watch, k -> new ArrayList<>()).add(Map.copyOf(nogood));
+        }
+        this.size++;
+        return true;
+    }
+
+    public boolean matches(Map<Constraint, Constraint.Status> decisions) {
+        if (this.contradiction) return true;
+        if (this.watched.isEmpty() || decisions.isEmpty()) return false;
+
+        if (this.watched.size() < decisions.size()) {
+            for (Map.Entry<Constraint, List<Map<Constraint, Constraint.Status>>> entry : this.watched.entrySet()) {
+                if (decisions.containsKey(entry.getKey()) && matchesAny(decisions, entry.getValue())) return true;
+            }
+        } else {
+            for (Constraint decision : decisions.keySet()) {
+                List<Map<Constraint, Constraint.Status>> nogoods = this.watched.get(decision);
+                if (nogoods != null && matchesAny(decisions, nogoods)) return true;
+            }
+        }
+        return false;
+    }
+
+    void countPruned() {
+        this.pruned++;
+    }
+
+    private static boolean matchesAny(Map<Constraint, Constraint.Status> decisions, List<Map<Constraint, Constraint.Status>> nogoods) {
+        for (Map<Constraint, Constraint.Status> nogood : nogoods) {
+            if (nogood.size() <= decisions.size() && contains(decisions, nogood)) return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(Map<Constraint, Constraint.Status> decisions, Map<Constraint, Constraint.Status> nogood) {
+        for (Map.Entry<Constraint, Constraint.Status> entry : nogood.entrySet()) {
+            if (decisions.get(entry.getKey()) != entry.getValue()) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+public final class SolutionIterator implements Iterator<ConstraintBranch> {
+    private final ConstraintTree tree;
+    private final Iterator<ConstraintMapperApplier> appliers;
+    private ConstraintMapperApplier.Run run;
+    private boolean done;
+
+    private final Deque<ConstraintBranch> ready = new ArrayDeque<>();
+    private final Set<ConstraintBranch> yielded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    SolutionIterator(ConstraintTree tree, List<ConstraintMapperApplier> appliers) {
+        this.tree = tree;
+        this.appliers = appliers.iterator();
+    }
+
+    //Once the iterator runs dry, tells whether it was because the budget ran out rather than because every solution was found
+    public Optional<SolveBudget.Exhaustion> exhausted() {
+        return this.tree.exhausted();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.ready.isEmpty() && !this.done) {
+            this.advance();
+        }
+        return !this.ready.isEmpty();
+    }
+
+    @Override
+    public ConstraintBranch next() {
+        if (!this.hasNext()) throw new NoSuchElementException();
+        return this.ready.poll();
+    }
+
+    private void advance() {
+        if (!this.tree.withinBudget()) {
+            this.collect();
+            this.done = true;
+            return;
+        }
+
+        if (this.run == null) {
+            if (!this.appliers.hasNext()) {
+                this.collect();
+                this.done = true;
+                return;
+            }
+
+            ConstraintMapperApplier applier = this.appliers.next();
+            if (this.appliers.hasNext()) {
+                //Later stages can still change a valid branch, so only the final stage is streamed
+                applier.accept(this.tree);
+                return;
+            }
+            this.run = applier.run(this.tree);
+        }
+
+        boolean more = this.run.step();
+        this.collect();
+        if (!more) {
+            this.done = true;
+        }
+    }
+
+    private void collect() {
+        for (ConstraintBranch branch : this.tree.validBranches()) {
+            if (this.yielded.add(branch)) {
+                //Later rounds keep writing to the tree's branches, the consumer gets the branch as it was when found
+                this.ready.add(branch.copy(this.tree));
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package honeyroasted.almonds;
+
+import java.time.Duration;
+
+public record SolveBudget(int maxBranches, long maxRounds, Duration maxTime, Cancellation cancellation) {
+    private static final SolveBudget unlimited = new SolveBudget(Integer.MAX_VALUE, Long.MAX_VALUE, null, null);
+
+    public static SolveBudget unlimited() {
+        return unlimited;
+    }
+
+    public SolveBudget withMaxBranches(int maxBranches) {
+        return new SolveBudget(maxBranches, this.maxRounds, this.maxTime, this.cancellation);
+    }
+
+    public SolveBudget withMaxRounds(long maxRounds) {
+        return new SolveBudget(this.maxBranches, maxRounds, this.maxTime, this.cancellation);
+    }
+
+    public SolveBudget withMaxTime(Duration maxTime) {
+        return new SolveBudget(this.maxBranches, this.maxRounds, maxTime, this.cancellation);
+    }
+
+    public SolveBudget withCancellation(Cancellation cancellation) {
+        return new SolveBudget(this.maxBranches, this.maxRounds, this.maxTime, cancellation);
+    }
+
+    public enum Exhaustion {
+        BRANCHES,
+        ROUNDS,
+        TIME,
+        CANCELLED
+    }
+
+    public static final class Cancellation {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean cancelled() {
+            return this.cancelled;
+        }
+    }
+}
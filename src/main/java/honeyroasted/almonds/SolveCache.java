@@ -0,0 +1,115 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public final class SolveCache {
+    private final int maxEntries;
+    private final LinkedHashMap<Key, ConstraintTree> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SolveCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache must hold at least one entry");
+        }
+
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ConstraintTree> eldest) {
+                if (this.size() > SolveCache.this.maxEntries) {
+                    SolveCache.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //Bound constraints are compared in order, since an ORDERED or BACKTRACKING stage keeps whichever valid branch it reaches
+    //first. Options that change which branches end up in the tree are part of the key, so solvers sharing a cache only
+    //share trees built the same way
+    record Key(List<ConstraintMapperApplier> appliers, List<Constraint> constraints, Set<Object> context,
+               boolean incremental, boolean learning) {
+        static Key of(List<ConstraintMapperApplier> appliers, Collection<? extends Constraint> constraints, PropertySet context,
+                      boolean incremental, boolean learning) {
+            return new Key(appliers, List.copyOf(constraints), new HashSet<>(context.all(Object.class)),
+                    incremental, learning);
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, int maxEntries) {
+    }
+
+    //A hit is copied into a fresh tree from the caller, so the budget, instrumentation, pool and interner are always the
+    //caller's own, never those of the solver that filled the entry
+    ConstraintTree get(Key key, Supplier<ConstraintTree> empty, Supplier<ConstraintTree> solve) {
+        ConstraintTree cached;
+        synchronized (this.entries) {
+            cached = this.entries.get(key);
+        }
+        if (cached != null) {
+            this.hits.increment();
+            //Copying forks the cached branches' storage, so copies of the same tree are taken one at a time
+            synchronized (cached) {
+                return cached.copyInto(empty.get());
+            }
+        }
+
+        this.misses.increment();
+        ConstraintTree tree = solve.get();
+        //A tree cut short by its budget is not the answer to the problem, only to that attempt
+        if (tree.exhausted().isEmpty()) {
+            //The cache keeps a copy no caller ever sees, so nothing done to a returned tree can reach another caller
+            ConstraintTree copy = tree.copyInto(new ConstraintTree()).freeze();
+            synchronized (this.entries) {
+                this.entries.put(key, copy);
+            }
+        }
+        return tree;
+    }
+
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    public long evictions() {
+        return this.evictions.sum();
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public int maxEntries() {
+        return this.maxEntries;
+    }
+
+    public Stats stats() {
+        return new Stats(this.hits(), this.misses(), this.evictions(), this.size(), this.maxEntries);
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package honeyroasted.almonds;
+
+public interface SolverInstrumentation {
+
+    default void mapperInvoked(ConstraintMapper mapper, ConstraintBranch branch, long nanos, int visited) {
+    }
+
+    default void changeExecuted(ConstraintMapper mapper, boolean modified) {
+    }
+
+    default void branchCreated(ConstraintTree tree, ConstraintBranch branch) {
+    }
+
+    default void branchMerged(ConstraintTree tree, ConstraintBranch branch) {
+    }
+
+    default void branchTrimmed(ConstraintTree tree, ConstraintBranch branch) {
+    }
+
+    default void roundCompleted(ConstraintTree tree, boolean modified) {
+    }
+
+}
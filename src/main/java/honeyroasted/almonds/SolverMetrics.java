@@ -0,0 +1,90 @@
+package honeyroasted.almonds;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class SolverMetrics implements SolverInstrumentation {
+    private final Map<ConstraintMapper, MapperCounters> mappers = new ConcurrentHashMap<>();
+    private final LongAdder branchesCreated = new LongAdder();
+    private final LongAdder branchesMerged = new LongAdder();
+    private final LongAdder branchesTrimmed = new LongAdder();
+    private final LongAdder rounds = new LongAdder();
+
+    private static final class MapperCounters {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder changes = new LongAdder();
+        private final LongAdder modifyingChanges = new LongAdder();
+
+        private MapperStats snapshot() {
+            return new MapperStats(this.invocations.sum(), this.nanos.sum(), this.visited.sum(), this.changes.sum(), this.modifyingChanges.sum());
+        }
+    }
+
+    public record MapperStats(long invocations, long nanos, long visited, long changes, long modifyingChanges) {
+    }
+
+    public record Snapshot(Map<ConstraintMapper, MapperStats> mappers, long branchesCreated, long branchesMerged,
+                           long branchesTrimmed, long rounds) {
+    }
+
+    private MapperCounters counters(ConstraintMapper mapper) {
+        return this.mappers.computeIfAbsent(mapper, k -> new MapperCounters());
+    }
+
+    @Override
+    public void mapperInvoked(ConstraintMapper mapper, ConstraintBranch branch, long nanos, int visited) {
+        MapperCounters counters = this.counters(mapper);
+        counters.invocations.increment();
+        counters.nanos.add(nanos);
+        counters.visited.add(visited);
+    }
+
+    @Override
+    public void changeExecuted(ConstraintMapper mapper, boolean modified) {
+        MapperCounters counters = this.counters(mapper);
+        counters.changes.increment();
+        if (modified) {
+            counters.modifyingChanges.increment();
+        }
+    }
+
+    @Override
+    public void branchCreated(ConstraintTree tree, ConstraintBranch branch) {
+        this.branchesCreated.increment();
+    }
+
+    @Override
+    public void branchMerged(ConstraintTree tree, ConstraintBranch branch) {
+        this.branchesMerged.increment();
+    }
+
+    @Override
+    public void branchTrimmed(ConstraintTree tree, ConstraintBranch branch) {
+        this.branchesTrimmed.increment();
+    }
+
+    @Override
+    public void roundCompleted(ConstraintTree tree, boolean modified) {
+        this.rounds.increment();
+    }
+
+    public Snapshot snapshot() {
+        Map<ConstraintMapper, MapperStats> mappers = new LinkedHashMap<>();
+        this.mappers.forEach((mapper, counters) -> mappers.put(mapper, counters.snapshot()));
+        return new Snapshot(Collections.unmodifiableMap(mappers), this.branchesCreated.sum(), this.branchesMerged.sum(),
+                this.branchesTrimmed.sum(), this.rounds.sum());
+    }
+
+    public void reset() {
+        this.mappers.clear();
+        this.branchesCreated.reset();
+        this.branchesMerged.reset();
+        this.branchesTrimmed.reset();
+        this.rounds.reset();
+    }
+}
@@ -0,0 +1,109 @@
+package honeyroasted.almonds.applier;
+
+import honeyroasted.almonds.Constraint;
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintTree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+final class BacktrackingSearch implements ConstraintMapperApplier.Run {
+    private final ConstraintTree tree;
+    private final MapperDispatch dispatch;
+    private final BranchQueue queue = new BranchQueue();
+    private final Deque<ChoicePoint> choicePoints = new ArrayDeque<>();
+
+    private ConstraintBranch curr;
+
+    private static final class ChoicePoint {
+        private final ConstraintBranch.Mark mark;
+        private final List<List<ConstraintBranch.Snapshot>> factors;
+        private final int factor;
+        private int alternative;
+
+        private ChoicePoint(ConstraintBranch.Mark mark, List<List<ConstraintBranch.Snapshot>> factors, int factor) {
+            this.mark = mark;
+            this.factors = factors;
+            this.factor = factor;
+        }
+    }
+
+    BacktrackingSearch(ConstraintTree tree, MapperDispatch dispatch) {
+        this.tree = tree;
+        this.dispatch = dispatch;
+    }
+
+    @Override
+    public boolean step() {
+        if (this.curr == null) {
+            this.queue.offerAll(this.tree.active());
+            this.curr = this.queue.poll(this.tree);
+            if (this.curr == null) {
+                return this.tree.executeChanges();
+            } else if (this.curr.status() == Constraint.Status.TRUE) {
+                this.curr = null;
+                return false;
+            }
+            this.curr.backtracking(true);
+        }
+
+        this.dispatch.accept(this.curr);
+        boolean modified = this.tree.executeChanges();
+
+        List<List<ConstraintBranch.Snapshot>> choices = this.curr.takeChoices();
+        if (choices != null) {
+            this.descend(choices, 0);
+            modified = true;
+        }
+
+        //Unwind to the most recent choice point with an untried alternative, the branch stays failed once none are left
+        while (this.dead()) {
+            if (!this.backtrack()) {
+                this.finish();
+                return true;
+            }
+        }
+
+        if (!modified || this.curr.status() == Constraint.Status.TRUE) {
+            this.finish();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean dead() {
+        //A branch merged into an identical one is left to that branch
+        return this.curr.trimmed() || this.tree.currentBranches().get(this.curr) != this.curr;
+    }
+
+    private void descend(List<List<ConstraintBranch.Snapshot>> factors, int factor) {
+        for (int i = factor; i < factors.size() && !this.dead(); i++) {
+            this.choicePoints.push(new ChoicePoint(this.curr.mark(), factors, i));
+            this.curr.choose(factors.get(i).get(0), 0);
+            this.tree.executeChanges();
+        }
+    }
+
+    private boolean backtrack() {
+        while (!this.choicePoints.isEmpty()) {
+            ChoicePoint choicePoint = this.choicePoints.peek();
+            List<ConstraintBranch.Snapshot> alternatives = choicePoint.factors.get(choicePoint.factor);
+            if (++choicePoint.alternative < alternatives.size()) {
+                this.tree.rollback(this.curr, choicePoint.mark);
+                this.curr.choose(alternatives.get(choicePoint.alternative), choicePoint.alternative);
+                this.tree.executeChanges();
+                this.descend(choicePoint.factors, choicePoint.factor + 1);
+                return true;
+            }
+            this.choicePoints.pop();
+        }
+        return false;
+    }
+
+    private void finish() {
+        this.curr.backtracking(false);
+        this.curr = null;
+        this.choicePoints.clear();
+    }
+}
@@ -0,0 +1,44 @@
+package honeyroasted.almonds.applier;
+
+import honeyroasted.almonds.BranchPriority;
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintTree;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+final class BranchQueue {
+    private record Entry(ConstraintBranch branch, BranchPriority priority, long seq) {
+    }
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparing(Entry::priority).thenComparingLong(Entry::seq));
+    //Branch hashes change with their constraints, so queued branches are tracked by identity
+    private final Map<ConstraintBranch, BranchPriority> queued = new IdentityHashMap<>();
+    private long seq;
+
+    void offerAll(Iterable<ConstraintBranch> branches) {
+        for (ConstraintBranch branch : branches) {
+            BranchPriority priority = branch.priority();
+            if (this.queued.get(branch) != priority) {
+                this.queued.put(branch, priority);
+                this.queue.add(new Entry(branch, priority, this.seq++));
+            }
+        }
+    }
+
+    ConstraintBranch poll(ConstraintTree tree) {
+        while (!this.queue.isEmpty()) {
+            Entry entry = this.queue.poll();
+            //Stale entries are skipped, either the priority changed or the branch diverged, was trimmed or merged away
+            if (this.queued.get(entry.branch()) == entry.priority()) {
+                this.queued.remove(entry.branch());
+                if (!entry.branch().trimmed() && tree.currentBranches().get(entry.branch()) == entry.branch()) {
+                    return entry.branch();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -13,18 +13,42 @@ public interface ConstraintMapperApplier extends ConstraintMapper {
 
     void accept(ConstraintTree tree);
 
+    //Appliers that can't be stepped finish everything in their first step
+    default Run run(ConstraintTree tree) {
+        return () -> {
+            this.accept(tree);
+            return false;
+        };
+    }
+
     static ConstraintMapperApplier of(List<ConstraintMapper> mappers, Type type) {
         return switch (type) {
             case EXHAUSTIVE -> new ExhaustiveConstraintMapperApplier(mappers);
             case ORDERED -> new OrderedConstraintMapperApplier(mappers);
             case UNTRIMMED -> new UntrimmedConstraintMapperApplier(mappers);
+            case PARALLEL -> new ParallelConstraintMapperApplier(mappers);
+            case BACKTRACKING -> new OrderedConstraintMapperApplier(mappers, true);
         };
     }
 
+    interface Run {
+        boolean step();
+
+        default void complete(ConstraintTree tree) {
+            while (tree.withinBudget() && this.step()) {
+                //Step until the applier reaches a fixpoint or runs out of budget
+            }
+        }
+    }
+
     enum Type {
         EXHAUSTIVE,
         ORDERED,
-        UNTRIMMED
+        UNTRIMMED,
+        //Dispatches different branches at the same time on the solver's pool, or on the common pool when the solver has
+        //none. Mappers must be stateless and thread safe, anything they share is used from several threads at once
+        PARALLEL,
+        BACKTRACKING
     }
 
 }
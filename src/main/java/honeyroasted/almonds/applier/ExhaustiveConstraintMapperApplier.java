@@ -10,9 +10,11 @@ import java.util.List;
 
 public class ExhaustiveConstraintMapperApplier implements ConstraintMapperApplier {
     private List<ConstraintMapper> mappers;
+    private MapperDispatch dispatch;
 
     public ExhaustiveConstraintMapperApplier(List<ConstraintMapper> mappers) {
         this.mappers = Collections.unmodifiableList(mappers);
+        this.dispatch = new MapperDispatch(this.mappers);
     }
 
     @Override
@@ -43,9 +45,7 @@ public class ExhaustiveConstraintMapperApplier implements ConstraintMapperApplie
 
         do {
             for (ConstraintBranch sub : branches) {
-                for (ConstraintMapper mapper : this.mappers) {
-                    mapper.accept(sub);
-                }
+                this.dispatch.accept(sub);
             }
 
             newTracked.clear();
@@ -60,17 +60,21 @@ public class ExhaustiveConstraintMapperApplier implements ConstraintMapperApplie
             List<ConstraintBranch> temp = branches;
             branches = newTracked;
             newTracked = temp;
-        } while (tree.executeChanges());
+        } while (tree.executeChanges() && tree.withinBudget());
     }
 
     @Override
     public void accept(ConstraintTree tree) {
-        do {
+        this.run(tree).complete(tree);
+    }
+
+    @Override
+    public Run run(ConstraintTree tree) {
+        return () -> {
             for (ConstraintBranch branch : tree.currentBranches().keySet()) {
-                for (ConstraintMapper mapper : this.mappers) {
-                    mapper.accept(branch);
-                }
+                this.dispatch.accept(branch);
             }
-        } while (tree.executeChanges());
+            return tree.executeChanges();
+        };
     }
 }
\ No newline at end of file
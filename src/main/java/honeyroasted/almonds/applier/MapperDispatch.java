@@ -0,0 +1,130 @@
+package honeyroasted.almonds.applier;
+
+import honeyroasted.almonds.Constraint;
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintMapper;
+import honeyroasted.almonds.ConstraintTree;
+import honeyroasted.almonds.SolverInstrumentation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class MapperDispatch {
+    private final ConstraintMapper[] mappers;
+    private final List<List<ConstraintMapper.Trigger>> triggers;
+    private final int[] required;
+
+    private final Map<Class<?>, int[]> byType = new ConcurrentHashMap<>();
+
+    MapperDispatch(List<ConstraintMapper> mappers) {
+        this.mappers = mappers.toArray(new ConstraintMapper[0]);
+        this.triggers = new ArrayList<>();
+        this.required = new int[this.mappers.length];
+
+        for (int i = 0; i < this.mappers.length; i++) {
+            if (this.mappers[i] instanceof OrderedConstraintMapperApplier ordered && ordered.backtracking()) {
+                //Backtracking keeps choices on the tree's branch instead of diverging, which a nested applier can't do
+                throw new IllegalArgumentException("Backtracking applier " + this.mappers[i] + " can't be nested in another applier");
+            }
+            List<ConstraintMapper.Trigger> mapperTriggers = this.mappers[i].triggers();
+            if (mapperTriggers.size() >= Integer.SIZE) {
+                throw new IllegalArgumentException("Mapper " + this.mappers[i] + " has too many triggers");
+            }
+            this.triggers.add(mapperTriggers);
+            this.required[i] = (1 << mapperTriggers.size()) - 1;
+        }
+    }
+
+    void accept(ConstraintBranch branch) {
+        int since = -1;
+        ConstraintTree tree = branch.parent();
+        if (tree != null && tree.incremental()) {
+            //Semi-naive evaluation, after the first visit mappers only see what changed since their last visit
+            since = branch.visitedRound(this);
+            branch.visit(this, tree.round());
+        }
+
+        SolverInstrumentation instrumentation = tree == null ? null : tree.instrumentation();
+        int[] matched = new int[this.mappers.length];
+        int[] visited = instrumentation == null ? null : new int[this.mappers.length];
+        for (Map.Entry<Class<?>, Set<Constraint>> typed : branch.typeConstraints().entrySet()) {
+            for (int entry : this.resolve(typed.getKey())) {
+                matched[entry >>> 5] |= 1 << (entry & 31);
+                if (visited != null) visited[entry >>> 5] += typed.getValue().size();
+            }
+        }
+
+        //Nested appliers dispatch on the same branch, so the flag is put back the way it was found
+        boolean dispatching = branch.dispatching();
+        if (!dispatching && tree != null && tree.learning()) {
+            branch.dispatching(true);
+        }
+        try {
+            this.acceptMatched(branch, since, instrumentation, matched, visited);
+        } finally {
+            branch.dispatching(dispatching);
+        }
+    }
+
+    private void acceptMatched(ConstraintBranch branch, int since, SolverInstrumentation instrumentation, int[] matched, int[] visited) {
+        //Mappers without triggers always run, all others need every trigger matched by at least one constraint
+        for (int i = 0; i < this.mappers.length; i++) {
+            if (matched[i] == this.required[i]) {
+                if (instrumentation == null) {
+                    this.accept(this.mappers[i], branch, since);
+                } else {
+                    int mapperVisited = this.required[i] == 0 ? branch.constraints().size() :
+                            since < 0 ? visited[i] : this.changedVisited(i, branch, since);
+                    branch.attribute(this.mappers[i]);
+                    long start = System.nanoTime();
+                    try {
+                        this.accept(this.mappers[i], branch, since);
+                    } finally {
+                        branch.attribute(null);
+                        instrumentation.mapperInvoked(this.mappers[i], branch, System.nanoTime() - start, mapperVisited);
+                    }
+                }
+            }
+        }
+    }
+
+    //Incremental visits only hand the mapper the constraints that changed since its last visit
+    private int changedVisited(int mapper, ConstraintBranch branch, int since) {
+        int count = 0;
+        for (Constraint constraint : branch.changedSince(since)) {
+            for (ConstraintMapper.Trigger trigger : this.triggers.get(mapper)) {
+                if (trigger.matches(constraint.getClass())) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void accept(ConstraintMapper mapper, ConstraintBranch branch, int since) {
+        if (since < 0) {
+            mapper.accept(branch);
+        } else {
+            mapper.acceptChanged(branch, since);
+        }
+    }
+
+    private int[] resolve(Class<?> type) {
+        return this.byType.computeIfAbsent(type, t -> {
+            List<Integer> entries = new ArrayList<>();
+            for (int i = 0; i < this.mappers.length; i++) {
+                List<ConstraintMapper.Trigger> mapperTriggers = this.triggers.get(i);
+                for (int j = 0; j < mapperTriggers.size(); j++) {
+                    if (mapperTriggers.get(j).matches(t)) {
+                        entries.add(i << 5 | j);
+                    }
+                }
+            }
+            return entries.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+}
@@ -7,13 +7,26 @@ import honeyroasted.almonds.ConstraintTree;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class OrderedConstraintMapperApplier implements ConstraintMapperApplier {
     private List<ConstraintMapper> mappers;
+    private MapperDispatch dispatch;
+    private boolean backtracking;
 
     public OrderedConstraintMapperApplier(List<ConstraintMapper> mappers) {
+        this(mappers, false);
+    }
+
+    public OrderedConstraintMapperApplier(List<ConstraintMapper> mappers, boolean backtracking) {
         this.mappers = Collections.unmodifiableList(mappers);
+        this.dispatch = new MapperDispatch(this.mappers);
+        this.backtracking = backtracking;
+    }
+
+    public boolean backtracking() {
+        return this.backtracking;
     }
 
     @Override
@@ -36,6 +49,9 @@ public class OrderedConstraintMapperApplier implements ConstraintMapperApplier {
 
     @Override
     public void accept(ConstraintBranch branch) {
+        if (this.backtracking) {
+            throw new UnsupportedOperationException("Backtracking appliers only run on a whole tree");
+        }
         ConstraintTree tree = branch.parent();
 
         List<ConstraintBranch> branches = new ArrayList<>();
@@ -44,14 +60,12 @@ public class OrderedConstraintMapperApplier implements ConstraintMapperApplier {
 
         do {
             if (!branches.isEmpty()) {
-                ConstraintBranch curr = branches.iterator().next();
+                ConstraintBranch curr = Collections.min(branches, Comparator.comparing(ConstraintBranch::priority));
                 if (curr.status() == Constraint.Status.TRUE) {
                     return;
                 }
 
-                for (ConstraintMapper mapper : this.mappers) {
-                    mapper.accept(curr);
-                }
+                this.dispatch.accept(curr);
             }
 
             newTracked.clear();
@@ -68,22 +82,34 @@ public class OrderedConstraintMapperApplier implements ConstraintMapperApplier {
             List<ConstraintBranch> temp = branches;
             branches = newTracked;
             newTracked = temp;
-        } while (tree.executeChanges());
+        } while (tree.executeChanges() && tree.withinBudget());
     }
 
     @Override
     public void accept(ConstraintTree tree) {
-        do {
-            if (!tree.active().isEmpty()) {
-                ConstraintBranch curr = tree.active().iterator().next();
+        this.run(tree).complete(tree);
+    }
+
+    @Override
+    public Run run(ConstraintTree tree) {
+        if (this.backtracking) {
+            //Depth first on a single branch, undoing changes on failure instead of keeping a copy per alternative
+            return new BacktrackingSearch(tree, this.dispatch);
+        }
+
+        BranchQueue queue = new BranchQueue();
+        return () -> {
+            //Expand the best active branch first, ties go to the branch that became active first
+            queue.offerAll(tree.active());
+            ConstraintBranch curr = queue.poll(tree);
+            if (curr != null) {
                 if (curr.status() == Constraint.Status.TRUE) {
-                    return;
+                    return false;
                 }
 
-                for (ConstraintMapper mapper : this.mappers) {
-                    mapper.accept(curr);
-                }
+                this.dispatch.accept(curr);
             }
-        } while (tree.executeChanges());
+            return tree.executeChanges();
+        };
     }
 }
@@ -0,0 +1,99 @@
+package honeyroasted.almonds.applier;
+
+import honeyroasted.almonds.ConstraintBranch;
+import honeyroasted.almonds.ConstraintMapper;
+import honeyroasted.almonds.ConstraintTree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelConstraintMapperApplier implements ConstraintMapperApplier {
+    private List<ConstraintMapper> mappers;
+    private MapperDispatch dispatch;
+    private ForkJoinPool pool;
+    private boolean sequential;
+
+    //Branches are dispatched on the given pool, or on the tree's pool when none is given here, or on the common pool
+    public ParallelConstraintMapperApplier(List<ConstraintMapper> mappers, ForkJoinPool pool) {
+        this.mappers = Collections.unmodifiableList(mappers);
+        this.dispatch = new MapperDispatch(this.mappers);
+        this.pool = pool;
+        //Nested appliers execute changes on the whole tree, so they can't run alongside other branches
+        this.sequential = this.mappers.stream().anyMatch(cm -> cm instanceof ConstraintMapperApplier);
+    }
+
+    public ParallelConstraintMapperApplier(List<ConstraintMapper> mappers) {
+        this(mappers, null);
+    }
+
+    @Override
+    public List<ConstraintMapper> mappers() {
+        return this.mappers;
+    }
+
+    @Override
+    public List<ConstraintMapper> flattened() {
+        List<ConstraintMapper> flat = new ArrayList<>();
+        this.mappers.forEach(cm -> {
+            if (cm instanceof UntrimmedConstraintMapperApplier cma) {
+                flat.addAll(cma.flattened());
+            } else {
+                flat.add(cm);
+            }
+        });
+        return flat;
+    }
+
+    @Override
+    public void accept(ConstraintBranch branch) {
+        ConstraintTree tree = branch.parent();
+
+        List<ConstraintBranch> branches = new ArrayList<>();
+        List<ConstraintBranch> newTracked = new ArrayList<>();
+        branches.add(branch);
+
+        do {
+            this.dispatchAll(tree, branches);
+
+            newTracked.clear();
+            for (ConstraintBranch sub : branches) {
+                if (sub.diverged()) {
+                    newTracked.addAll(sub.divergence());
+                } else {
+                    newTracked.add(sub);
+                }
+            }
+
+            List<ConstraintBranch> temp = branches;
+            branches = newTracked;
+            newTracked = temp;
+        } while (tree.executeChanges() && tree.withinBudget());
+    }
+
+    @Override
+    public void accept(ConstraintTree tree) {
+        this.run(tree).complete(tree);
+    }
+
+    @Override
+    public Run run(ConstraintTree tree) {
+        return () -> {
+            this.dispatchAll(tree, new ArrayList<>(tree.currentBranches().keySet()));
+            return tree.executeChanges();
+        };
+    }
+
+    private void dispatchAll(ConstraintTree tree, List<ConstraintBranch> branches) {
+        ForkJoinPool pool = this.pool != null ? this.pool : tree.pool() != null ? tree.pool() : ForkJoinPool.commonPool();
+        if (this.sequential || branches.size() < 2) {
+            for (ConstraintBranch branch : branches) {
+                this.dispatch.accept(branch);
+            }
+        } else {
+            //Mappers only queue changes on their own branch, the tree merges them in order afterward
+            pool.submit(() -> branches.parallelStream().forEach(this.dispatch::accept)).join();
+        }
+    }
+}
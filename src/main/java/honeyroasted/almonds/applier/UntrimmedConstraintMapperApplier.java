@@ -10,9 +10,11 @@ import java.util.List;
 
 public class UntrimmedConstraintMapperApplier implements ConstraintMapperApplier {
     private List<ConstraintMapper> mappers;
+    private MapperDispatch dispatch;
 
     public UntrimmedConstraintMapperApplier(List<ConstraintMapper> mappers) {
         this.mappers = Collections.unmodifiableList(mappers);
+        this.dispatch = new MapperDispatch(this.mappers);
     }
 
     @Override
@@ -43,9 +45,7 @@ public class UntrimmedConstraintMapperApplier implements ConstraintMapperApplier
 
         do {
             for (ConstraintBranch sub : branches) {
-                for (ConstraintMapper mapper : this.mappers) {
-                    mapper.accept(sub);
-                }
+                this.dispatch.accept(sub);
             }
 
             newTracked.clear();
@@ -62,17 +62,21 @@ public class UntrimmedConstraintMapperApplier implements ConstraintMapperApplier
             List<ConstraintBranch> temp = branches;
             branches = newTracked;
             newTracked = temp;
-        } while (tree.executeChanges());
+        } while (tree.executeChanges() && tree.withinBudget());
     }
 
     @Override
     public void accept(ConstraintTree tree) {
-        do {
+        this.run(tree).complete(tree);
+    }
+
+    @Override
+    public Run run(ConstraintTree tree) {
+        return () -> {
             for (ConstraintBranch branch : tree.active()) {
-                for (ConstraintMapper mapper : this.mappers) {
-                    mapper.accept(branch);
-                }
+                this.dispatch.accept(branch);
             }
-        } while (tree.executeChanges());
+            return tree.executeChanges();
+        };
     }
 }
@@ -0,0 +1,75 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BacktrackingTest {
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(3, 3).toArray(new Constraint[0]);
+    }
+
+    @Test
+    public void rollbackRestoresMarkedState() {
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree()).backtracking(true);
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+        branch.add(a);
+        branch.executeChanges();
+        int hash = branch.hashCode();
+
+        ConstraintBranch.Mark mark = branch.mark();
+        branch.set(a, Constraint.Status.FALSE);
+        branch.add(b, Constraint.Status.TRUE);
+        branch.executeChanges();
+        assertTrue(branch.trimmed());
+
+        branch.rollback(mark);
+        assertEquals(Map.of(a, Constraint.Status.UNKNOWN), branch.constraints());
+        assertFalse(branch.trimmed());
+        assertEquals(Constraint.Status.UNKNOWN, branch.status());
+        assertEquals(hash, branch.hashCode());
+        assertEquals(Objects.hash(branch.constraints().keySet()), branch.hashCode());
+        assertTrue(branch.constraintsByType(Constraint.Label.class).contains(a));
+        assertFalse(branch.constraintsByType(Constraint.Label.class).contains(b));
+    }
+
+    @Test
+    public void markNeedsExecutedChanges() {
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        assertThrows(IllegalStateException.class, branch::mark);
+
+        branch.backtracking(true);
+        branch.add(Constraint.label("a"));
+        assertThrows(IllegalStateException.class, branch::mark);
+    }
+
+    @Test
+    public void findsAnExhaustiveSolution() {
+        ConstraintTree exhaustive = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solve();
+        ConstraintTree backtracking = TestConstraints.solver(ConstraintMapperApplier.Type.BACKTRACKING).bind(puzzle()).solve();
+
+        assertEquals(1, backtracking.validBranches().size());
+        assertTrue(TestConstraints.solutions(exhaustive).containsAll(TestConstraints.solutions(backtracking)));
+        assertEquals(1, backtracking.numBranches());
+    }
+
+    @Test
+    public void nestedBacktrackingIsRejected() {
+        ConstraintMapperApplier backtracking = ConstraintMapperApplier.of(TestConstraints.mappers(), ConstraintMapperApplier.Type.BACKTRACKING);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ConstraintMapperApplier.of(List.of(backtracking), ConstraintMapperApplier.Type.EXHAUSTIVE));
+        assertThrows(UnsupportedOperationException.class,
+                () -> backtracking.accept(new ConstraintBranch(new ConstraintTree())));
+    }
+}
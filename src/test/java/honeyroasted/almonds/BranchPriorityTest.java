@@ -0,0 +1,65 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BranchPriorityTest {
+
+    //Ranks the alternatives in reverse and tags each one with the value it picked
+    static class RankedChoiceMapper extends ConstraintMapper.Unary<TestConstraints.Choice> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, TestConstraints.Choice constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, TestConstraints.Choice constraint, Constraint.Status status) {
+            List<ConstraintBranch.Snapshot> options = new ArrayList<>();
+            for (int i = 0; i < constraint.right(); i++) {
+                PropertySet metadata = new PropertySet()
+                        .attach(new BranchPriority(constraint.right() - i))
+                        .attach(constraint.left() + " picked " + i);
+                options.add(new ConstraintBranch.Snapshot(metadata, Map.of(new TestConstraints.Assign(constraint.left(), i), Constraint.Status.UNKNOWN)));
+            }
+            branch.set(constraint, Constraint.Status.TRUE);
+            branch.divergeBranches(options);
+        }
+    }
+
+    private static ConstraintSolver solver(ConstraintMapperApplier.Type type) {
+        return new ConstraintSolver(List.of(ConstraintMapperApplier.of(List.of(new RankedChoiceMapper(), new TestConstraints.AssignMapper()), type)));
+    }
+
+    @Test
+    public void comparesLexicographically() {
+        assertTrue(new BranchPriority(1, 2).compareTo(new BranchPriority(1, 3)) < 0);
+        assertTrue(new BranchPriority(1).compareTo(new BranchPriority(1, 0)) < 0);
+        assertTrue(new BranchPriority(-5, 100).compareTo(new BranchPriority(2)) < 0);
+        assertEquals(new BranchPriority(1, 2, 3, 4, 5), BranchPriority.root().sub(1, 2, 3, 4, 5));
+    }
+
+    @Test
+    public void priorityStaysOutOfBranchMetadata() {
+        for (ConstraintMapperApplier.Type type : ConstraintMapperApplier.Type.values()) {
+            ConstraintTree tree = solver(type)
+                    .bind(new TestConstraints.Choice("x", 2), new TestConstraints.Choice("y", 2))
+                    .solve();
+
+            assertFalse(tree.validBranches().isEmpty(), type.name());
+            for (ConstraintBranch branch : tree.validBranches()) {
+                assertFalse(branch.metadata().has(BranchPriority.class), type.name());
+                assertEquals(2, branch.metadata().all(String.class).size(), type.name());
+                assertEquals(2, branch.priority().depth(), type.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package honeyroasted.almonds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ChangeLogTest {
+
+    @Test
+    public void copyHoldsOnlyItsRange() {
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+        Constraint c = Constraint.label("c");
+
+        ChangeLog log = new ChangeLog();
+        for (int i = 0; i < 20; i++) {
+            log.append(ChangeLog.ADD, i % 2 == 0 ? a : b, Constraint.Status.UNKNOWN, null, null);
+        }
+        ChangeLog copy = log.copy(5, 9);
+        copy.append(ChangeLog.SET, c, Constraint.Status.TRUE, null, new Constraint[]{a});
+
+        assertEquals(5, copy.size());
+        assertEquals(20, log.size());
+        assertSame(b, copy.constraint(0));
+        assertSame(c, copy.constraint(4));
+        assertEquals(ChangeLog.SET, copy.op(4));
+        assertEquals(1, copy.cause(4).length);
+        assertNull(copy.cause(0));
+        assertNull(log.cause(5));
+    }
+
+    @Test
+    public void copiesWritingPastSharedViewDoNotSeeEachOther() {
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+        Constraint c = Constraint.label("c");
+
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        branch.add(a);
+
+        //Both share the pending add of a, each then appends past the shared view
+        ConstraintBranch copy = branch.copy();
+        branch.add(b);
+        copy.add(c, Constraint.Status.TRUE);
+        copy.set(a, Constraint.Status.FALSE);
+
+        branch.executeChanges();
+        copy.executeChanges();
+
+        assertEquals(Map.of(a, Constraint.Status.UNKNOWN, b, Constraint.Status.UNKNOWN), branch.constraints());
+        assertEquals(Map.of(a, Constraint.Status.FALSE, c, Constraint.Status.TRUE), copy.constraints());
+    }
+
+    @Test
+    public void manyCopiesOfOneView() {
+        Constraint a = Constraint.label("a");
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        branch.add(a);
+
+        ConstraintBranch[] copies = new ConstraintBranch[8];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = branch.copy();
+            copies[i].add(Constraint.label("c" + i));
+        }
+
+        for (int i = 0; i < copies.length; i++) {
+            copies[i].executeChanges();
+            assertEquals(Map.of(a, Constraint.Status.UNKNOWN, Constraint.label("c" + i), Constraint.Status.UNKNOWN), copies[i].constraints());
+        }
+        branch.executeChanges();
+        assertEquals(Map.of(a, Constraint.Status.UNKNOWN), branch.constraints());
+    }
+}
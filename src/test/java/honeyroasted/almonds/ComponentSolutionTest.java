@@ -0,0 +1,67 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ComponentSolutionTest {
+
+    //Relates every variable to every other without them sharing a parameter, no two variables may take the same value
+    static class DistinctMapper implements ConstraintMapper {
+        @Override
+        public void accept(ConstraintBranch branch) {
+            Map<Integer, String> taken = new HashMap<>();
+            for (Constraint constraint : branch.constraintsByType(TestConstraints.Assign.class)) {
+                TestConstraints.Assign assign = (TestConstraints.Assign) constraint;
+                String other = taken.putIfAbsent(assign.right(), assign.left());
+                if (other != null && !other.equals(assign.left()) && !branch.constraints().containsKey(Constraint.FALSE)) {
+                    branch.add(Constraint.FALSE, Constraint.Status.FALSE);
+                }
+            }
+        }
+    }
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(3, 3).toArray(new Constraint[0]);
+    }
+
+    private static ConstraintSolver solver() {
+        return TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle());
+    }
+
+    @Test
+    public void withoutKeysSolvesOneComponent() {
+        ComponentSolution solution = solver().solveComponents();
+
+        assertEquals(1, solution.components().size());
+        assertEquals(TestConstraints.solutions(solver().solve()), TestConstraints.solutions(solution.tree()));
+    }
+
+    @Test
+    public void keysSplitComponents() {
+        ComponentSolution solution = solver().componentKeys(constraint -> List.of(((Constraint.Binary<?, ?>) constraint).left())).solveComponents();
+        ConstraintTree whole = solver().solve();
+
+        assertEquals(3, solution.components().size());
+        assertEquals(whole.validBranches().size(), solution.numValidBranches());
+        assertEquals(TestConstraints.solutions(whole), TestConstraints.solutions(solution.tree()));
+    }
+
+    @Test
+    public void mappersRelatingUnsharedParametersStayTogether() {
+        List<ConstraintMapper> mappers = new ArrayList<>(TestConstraints.mappers());
+        mappers.add(new DistinctMapper());
+        ConstraintSolver solver = new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers, ConstraintMapperApplier.Type.EXHAUSTIVE)))
+                .bind(new TestConstraints.Choice("x", 2), new TestConstraints.Choice("y", 3));
+
+        //x and y share no parameter, splitting on parameters would lose the distinct relation and find all 6 pairs
+        assertEquals(4, solver.solve().validBranches().size());
+        assertEquals(4, solver.solveComponents().numValidBranches());
+    }
+}
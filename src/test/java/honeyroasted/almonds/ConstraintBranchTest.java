@@ -0,0 +1,92 @@
+package honeyroasted.almonds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConstraintBranchTest {
+
+    @Test
+    public void copiesShareNothingVisible() {
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+        branch.add(a);
+        branch.executeChanges();
+
+        ConstraintBranch copy = branch.copy();
+        copy.set(a, Constraint.Status.TRUE);
+        copy.add(b);
+        copy.executeChanges();
+
+        branch.drop(a);
+        branch.executeChanges();
+
+        assertEquals(Map.of(), branch.constraints());
+        assertEquals(Map.of(a, Constraint.Status.TRUE, b, Constraint.Status.UNKNOWN), copy.constraints());
+        assertTrue(branch.constraintsByType(Constraint.Label.class).isEmpty());
+        assertEquals(2, copy.constraintsByType(Constraint.Label.class).size());
+    }
+
+    @Test
+    public void pendingChangesAreCopied() {
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        Constraint a = Constraint.label("a");
+        branch.add(a);
+
+        ConstraintBranch copy = branch.copy();
+        assertTrue(copy.executeChanges());
+        assertTrue(copy.constraints().containsKey(a));
+        assertFalse(branch.constraints().containsKey(a));
+    }
+
+    @Test
+    public void hashFollowsConstraints() {
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+        Constraint c = Constraint.label("c");
+
+        branch.add(a);
+        branch.add(b);
+        branch.executeChanges();
+        assertEquals(Objects.hash(branch.constraints().keySet()), branch.hashCode());
+
+        branch.set(a, Constraint.Status.TRUE);
+        branch.drop(b);
+        branch.add(c);
+        branch.executeChanges();
+        assertEquals(Objects.hash(branch.constraints().keySet()), branch.hashCode());
+        assertEquals(Objects.hash(Set.of(a, c)), branch.hashCode());
+    }
+
+    @Test
+    public void equalBranchesMergeInTree() {
+        ConstraintTree tree = new ConstraintTree();
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+
+        ConstraintBranch first = new ConstraintBranch(tree);
+        first.add(a);
+        first.add(b);
+        first.executeChanges();
+
+        ConstraintBranch second = new ConstraintBranch(tree);
+        second.add(b, Constraint.Status.TRUE);
+        second.add(a);
+        second.executeChanges();
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+
+        tree.addBranch(first);
+        tree.addBranch(second);
+        assertEquals(1, tree.numBranches());
+    }
+}
@@ -0,0 +1,67 @@
+package honeyroasted.almonds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConstraintFactoriesTest {
+
+    public static class Triple extends Constraint.Trinary<String, Integer, Boolean> {
+        public Triple(String left, Integer middle, Boolean right) {
+            super(left, middle, right);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " " + this.middle() + " " + this.right();
+        }
+    }
+
+    public static class Primitive extends Constraint.Unary<Integer> {
+        public Primitive(int value) {
+            super(value);
+        }
+
+        @Override
+        public String simpleName() {
+            return String.valueOf(this.value());
+        }
+    }
+
+    public static class Registered extends Constraint.Unary<String> {
+        public Registered(String value) {
+            super(value);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.value();
+        }
+    }
+
+    @Test
+    public void createsThroughConstructor() {
+        Constraint assign = new TestConstraints.Assign("x", 1);
+        assertEquals(new TestConstraints.Assign("y", 2), assign.createNew(List.of("y", 2)));
+
+        Constraint triple = new Triple("a", 1, true);
+        assertEquals(new Triple("b", 2, false), triple.createNew(List.of("b", 2, false)));
+
+        assertEquals(new Primitive(3), new Primitive(1).createNew(List.of(3)));
+    }
+
+    @Test
+    public void rejectsWrongArity() {
+        Constraint assign = new TestConstraints.Assign("x", 1);
+        assertThrows(IllegalArgumentException.class, () -> assign.createNew(List.of("y")));
+    }
+
+    @Test
+    public void registeredFactoryWins() {
+        ConstraintFactories.register(Registered.class, parameters -> new Registered("registered " + parameters.get(0)));
+        assertEquals(new Registered("registered b"), new Registered("a").createNew(List.of("b")));
+    }
+}
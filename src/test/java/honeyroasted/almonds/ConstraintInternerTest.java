@@ -0,0 +1,57 @@
+package honeyroasted.almonds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ConstraintInternerTest {
+
+    @Test
+    public void equalConstraintsShareOneInstance() {
+        ConstraintInterner interner = new ConstraintInterner();
+        Constraint first = interner.intern(new TestConstraints.Assign("x", 1));
+        Constraint second = interner.intern(new TestConstraints.Assign("x", 1));
+        Constraint other = interner.intern(new TestConstraints.Assign("x", 2));
+
+        assertSame(first, second);
+        assertNotEquals(first, other);
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    public void concurrentInterningAgrees() throws Exception {
+        ConstraintInterner interner = new ConstraintInterner();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Constraint>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    List<Constraint> interned = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        interned.add(interner.intern(new TestConstraints.Assign("v" + i, i)));
+                    }
+                    return interned;
+                }));
+            }
+
+            List<Constraint> expected = results.get(0).get();
+            for (Future<List<Constraint>> result : results) {
+                List<Constraint> interned = result.get();
+                for (int i = 0; i < interned.size(); i++) {
+                    assertSame(expected.get(i), interned.get(i));
+                }
+            }
+            assertEquals(1000, interner.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
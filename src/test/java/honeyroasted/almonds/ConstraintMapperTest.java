@@ -0,0 +1,87 @@
+package honeyroasted.almonds;
+
+import honeyroasted.collect.property.PropertySet;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConstraintMapperTest {
+
+    public static class Base extends Constraint.Unary<String> {
+        public Base(String value) {
+            super(value);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.value();
+        }
+    }
+
+    public static class Sub extends Base {
+        public Sub(String value) {
+            super(value);
+        }
+    }
+
+    public static class SubSub extends Sub {
+        public SubSub(String value) {
+            super(value);
+        }
+    }
+
+    static class Recorder extends ConstraintMapper.Unary<Constraint> {
+        private final Set<Constraint> seen = new HashSet<>();
+
+        Recorder(Class<?> type, boolean strict) {
+            super((Class<Constraint>) type, strict);
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Constraint constraint, Constraint.Status status) {
+            this.seen.add(constraint);
+        }
+    }
+
+    private static ConstraintBranch branch() {
+        ConstraintBranch branch = new ConstraintBranch(new ConstraintTree());
+        branch.add(new Base("a"));
+        branch.add(new Sub("b"));
+        branch.add(new SubSub("c"));
+        branch.executeChanges();
+        return branch;
+    }
+
+    @Test
+    public void strictMatchesExactType() {
+        Recorder recorder = new Recorder(Sub.class, true);
+        recorder.accept(branch());
+        assertEquals(Set.of(new Sub("b")), recorder.seen);
+    }
+
+    @Test
+    public void nonStrictMatchesTypesTheTargetIsAssignableTo() {
+        Recorder recorder = new Recorder(Sub.class, false);
+        recorder.accept(branch());
+        assertEquals(Set.of(new Base("a"), new Sub("b")), recorder.seen);
+
+        ConstraintMapper.Trigger trigger = new ConstraintMapper.Trigger(Sub.class, false);
+        assertTrue(trigger.matches(Base.class));
+        assertTrue(trigger.matches(Sub.class));
+        assertFalse(trigger.matches(SubSub.class));
+    }
+
+    @Test
+    public void supertypesIncludeInterfaces() {
+        List<Class<?>> supertypes = ConstraintTypes.supertypes(Sub.class);
+        assertEquals(Sub.class, supertypes.get(0));
+        assertTrue(supertypes.containsAll(List.of(Base.class, Constraint.Unary.class, Constraint.class, SimpleName.class, Object.class)));
+        assertFalse(supertypes.contains(SubSub.class));
+    }
+}
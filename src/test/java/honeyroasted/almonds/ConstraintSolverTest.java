@@ -0,0 +1,109 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConstraintSolverTest {
+
+    static class Countdown extends Constraint.Unary<Integer> {
+        public Countdown(Integer value) {
+            super(value);
+        }
+
+        @Override
+        public String simpleName() {
+            return "countdown " + this.value();
+        }
+    }
+
+    static class CountdownMapper extends ConstraintMapper.Unary<Countdown> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Countdown constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Countdown constraint, Constraint.Status status) {
+            if (constraint.value() == 0) {
+                branch.set(constraint, Constraint.Status.TRUE);
+            } else {
+                branch.drop(constraint);
+                branch.add(new Countdown(constraint.value() - 1));
+            }
+        }
+    }
+
+    //Looks at every label and never changes one
+    static class LabelMapper extends ConstraintMapper.Unary<Constraint.Label> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Constraint.Label constraint, Constraint.Status status) {
+            return false;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Constraint.Label constraint, Constraint.Status status) {
+        }
+    }
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(3, 3).toArray(new Constraint[0]);
+    }
+
+    private static Constraint[] countdown(int rounds, int labels) {
+        List<Constraint> constraints = new ArrayList<>();
+        constraints.add(new Countdown(rounds));
+        for (int i = 0; i < labels; i++) {
+            constraints.add(Constraint.label("l" + i));
+        }
+        return constraints.toArray(new Constraint[0]);
+    }
+
+    @Test
+    public void incrementalMatchesFullEvaluation() {
+        for (ConstraintMapperApplier.Type type : ConstraintMapperApplier.Type.values()) {
+            ConstraintTree full = TestConstraints.solver(type).bind(puzzle()).solve();
+            ConstraintTree incremental = TestConstraints.solver(type).incremental(true).bind(puzzle()).solve();
+
+            assertFalse(full.validBranches().isEmpty(), type.name());
+            assertEquals(TestConstraints.solutions(full), TestConstraints.solutions(incremental), type.name());
+        }
+    }
+
+    @Test
+    public void incrementalVisitsOnlyChanges() {
+        ConstraintMapper labels = new LabelMapper();
+        List<ConstraintMapper> mappers = List.of(new CountdownMapper(), labels);
+
+        SolverMetrics full = new SolverMetrics();
+        new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers, ConstraintMapperApplier.Type.EXHAUSTIVE)))
+                .instrumentation(full).bind(countdown(10, 50)).solve();
+
+        SolverMetrics incremental = new SolverMetrics();
+        new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers, ConstraintMapperApplier.Type.EXHAUSTIVE)))
+                .instrumentation(incremental).incremental(true).bind(countdown(10, 50)).solve();
+
+        long fullVisited = full.snapshot().mappers().get(labels).visited();
+        long incrementalVisited = incremental.snapshot().mappers().get(labels).visited();
+        assertEquals(full.snapshot().mappers().get(labels).invocations(), incremental.snapshot().mappers().get(labels).invocations());
+        assertTrue(fullVisited >= 50 * 10, "full evaluation visits every label each round");
+        assertEquals(50, incrementalVisited, "labels only count on the first visit");
+    }
+
+    @Test
+    public void incrementalHistoryIsTrimmed() {
+        ConstraintTree tree = new ConstraintSolver(List.of(ConstraintMapperApplier.of(List.of(new CountdownMapper()), ConstraintMapperApplier.Type.EXHAUSTIVE)))
+                .incremental(true).bind(countdown(500, 10)).solve();
+
+        ConstraintBranch branch = tree.currentBranches().keySet().iterator().next();
+        assertTrue(branch.constraints().containsKey(new Countdown(0)));
+        assertTrue(branch.changedHistory() < 10, "history kept " + branch.changedHistory() + " entries");
+    }
+}
@@ -0,0 +1,136 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConstraintTreeTest {
+
+    //Value 0 is never allowed, so that alternative is FALSE as soon as it is created
+    static class ExcludingChoiceMapper extends ConstraintMapper.Unary<TestConstraints.Choice> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, TestConstraints.Choice constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, TestConstraints.Choice constraint, Constraint.Status status) {
+            List<Map<Constraint, Constraint.Status>> options = new ArrayList<>();
+            for (int i = 0; i < constraint.right(); i++) {
+                options.add(Map.of(new TestConstraints.Assign(constraint.left(), i), i == 0 ? Constraint.Status.FALSE : Constraint.Status.UNKNOWN));
+            }
+            branch.set(constraint, Constraint.Status.TRUE);
+            branch.diverge(options);
+        }
+    }
+
+    private static ConstraintTree solveExcluding() {
+        return new ConstraintSolver(List.of(ConstraintMapperApplier.of(List.of(new ExcludingChoiceMapper(), new TestConstraints.AssignMapper()),
+                ConstraintMapperApplier.Type.EXHAUSTIVE)))
+                .bind(new TestConstraints.Choice("x", 3), new TestConstraints.Choice("y", 3))
+                .solve();
+    }
+
+    @Test
+    public void divergenceBuildsEveryCombination() {
+        ConstraintTree tree = solveExcluding();
+
+        //3 x 3 alternatives, every combination using x = 0 or y = 0 is invalid
+        assertEquals(9, tree.numBranches());
+        assertEquals(5, tree.invalidBranches().size());
+        assertEquals(4, tree.validBranches().size());
+    }
+
+    @Test
+    public void branchSetsAreSnapshots() {
+        ConstraintTree tree = new ConstraintTree();
+        ConstraintBranch branch = new ConstraintBranch(tree);
+        Constraint a = Constraint.label("a");
+        branch.add(a);
+        tree.addBranch(branch);
+        tree.executeChanges();
+
+        Set<ConstraintBranch> unexplored = tree.unexploredBranches();
+        Set<ConstraintBranch> valid = tree.validBranches();
+
+        branch.set(a, Constraint.Status.TRUE);
+        tree.executeChanges();
+
+        assertEquals(Set.of(branch), unexplored);
+        assertTrue(valid.isEmpty());
+        assertEquals(Set.of(branch), tree.validBranches());
+        assertTrue(tree.unexploredBranches().isEmpty());
+    }
+
+    @Test
+    public void statusFollowsBranchChanges() {
+        ConstraintTree tree = new ConstraintTree();
+        ConstraintBranch branch = new ConstraintBranch(tree);
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+        tree.addBranch(branch);
+        assertEquals(Constraint.Status.UNKNOWN, tree.status());
+
+        branch.add(a, Constraint.Status.TRUE);
+        branch.add(b, Constraint.Status.ASSUMED);
+        tree.executeChanges();
+        assertEquals(Constraint.Status.ASSUMED, branch.status());
+        assertEquals(Constraint.Status.ASSUMED, tree.status());
+
+        branch.set(b, Constraint.Status.FALSE);
+        tree.executeChanges();
+        assertEquals(Constraint.Status.FALSE, branch.status());
+        assertEquals(Constraint.Status.FALSE, tree.status());
+        assertEquals(Set.of(branch), tree.invalidBranches());
+
+        branch.drop(b);
+        tree.executeChanges();
+        assertEquals(Constraint.Status.TRUE, branch.status());
+        assertEquals(Constraint.Status.TRUE, tree.status());
+        assertTrue(tree.invalidBranches().isEmpty());
+    }
+
+    @Test
+    public void extendMatchesSolvingEverythingAtOnce() {
+        for (boolean incremental : List.of(false, true)) {
+            List<Constraint> all = TestConstraints.puzzle(3, 3);
+            ConstraintTree whole = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).incremental(incremental)
+                    .bind(all.toArray(new Constraint[0])).solve();
+
+            ConstraintTree extended = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).incremental(incremental)
+                    .bind(all.subList(0, 4).toArray(new Constraint[0])).solve();
+            assertEquals(4, extended.validBranches().size());
+            extended.extend(all.subList(4, all.size()));
+
+            assertTrue(extended.exhausted().isEmpty());
+            assertEquals(TestConstraints.solutions(whole), TestConstraints.solutions(extended));
+        }
+    }
+
+    @Test
+    public void extendLeavesTrimmedBranchesAlone() {
+        ConstraintTree tree = solveExcluding();
+        Set<ConstraintBranch> invalid = tree.invalidBranches();
+
+        Constraint label = Constraint.label("extended");
+        tree.extend(label);
+
+        assertEquals(invalid, tree.invalidBranches());
+        for (ConstraintBranch branch : tree.invalidBranches()) {
+            assertTrue(!branch.constraints().containsKey(label));
+        }
+        Set<ConstraintBranch> untrimmed = tree.branches(branch -> !branch.trimmed());
+        assertEquals(4, untrimmed.size());
+        for (ConstraintBranch branch : untrimmed) {
+            assertTrue(branch.constraints().containsKey(label));
+        }
+    }
+}
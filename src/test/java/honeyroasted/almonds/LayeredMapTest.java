@@ -0,0 +1,101 @@
+package honeyroasted.almonds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LayeredMapTest {
+
+    @Test
+    public void forkIsIsolatedFromOriginal() {
+        LayeredMap<String, Integer> map = new LayeredMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+
+        LayeredMap<String, Integer> fork = map.fork();
+        fork.put("a", 10);
+        fork.put("c", 3);
+        fork.remove("b");
+
+        map.put("d", 4);
+
+        assertEquals(Map.of("a", 1, "b", 2, "d", 4), map);
+        assertEquals(Map.of("a", 10, "c", 3), fork);
+        assertNull(fork.get("d"));
+        assertFalse(map.containsKey("c"));
+    }
+
+    @Test
+    public void frozenLayersSurviveFurtherWrites() {
+        LayeredMap<String, Integer> map = new LayeredMap<>();
+        map.put("a", 1);
+        LayeredMap<String, Integer> first = map.fork();
+
+        map.put("a", 2);
+        LayeredMap<String, Integer> second = map.fork();
+
+        map.remove("a");
+
+        assertEquals(Map.of("a", 1), first);
+        assertEquals(Map.of("a", 2), second);
+        assertEquals(Map.of(), map);
+    }
+
+    @Test
+    public void deepForkChainsKeepOrder() {
+        LayeredMap<Integer, Integer> map = new LayeredMap<>();
+        LinkedHashMap<Integer, Integer> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 40; i++) {
+            map.put(i, i);
+            expected.put(i, i);
+            map = map.fork();
+        }
+
+        assertIterableEquals(expected.entrySet(), map.entrySet());
+    }
+
+    @Test
+    public void matchesLinkedHashMap() {
+        Random random = new Random(7);
+        List<LayeredMap<Integer, Integer>> maps = new ArrayList<>();
+        List<LinkedHashMap<Integer, Integer>> expected = new ArrayList<>();
+        maps.add(new LayeredMap<>());
+        expected.add(new LinkedHashMap<>());
+
+        for (int step = 0; step < 20000; step++) {
+            int index = random.nextInt(maps.size());
+            LayeredMap<Integer, Integer> map = maps.get(index);
+            LinkedHashMap<Integer, Integer> reference = expected.get(index);
+            int key = random.nextInt(32);
+
+            switch (random.nextInt(10)) {
+                case 0, 1, 2, 3 -> assertEquals(reference.put(key, step), map.put(key, step));
+                case 4, 5 -> assertEquals(reference.remove(key), map.remove(key));
+                case 6 -> assertEquals(reference.get(key), map.get(key));
+                case 7 -> {
+                    if (maps.size() < 16) {
+                        maps.add(map.fork());
+                        expected.add(new LinkedHashMap<>(reference));
+                    }
+                }
+                default -> {
+                    assertEquals(reference.size(), map.size());
+                    assertIterableEquals(reference.entrySet(), map.entrySet());
+                }
+            }
+        }
+
+        for (int i = 0; i < maps.size(); i++) {
+            assertIterableEquals(expected.get(i).entrySet(), maps.get(i).entrySet());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NogoodsTest {
+
+    //Adds a label without naming a cause for it
+    static class SilentMapper implements ConstraintMapper {
+        @Override
+        public void accept(ConstraintBranch branch) {
+            Constraint seen = Constraint.label("seen");
+            if (!branch.constraints().containsKey(seen)) {
+                branch.add(seen, Constraint.Status.TRUE);
+            }
+        }
+    }
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(3, 3).toArray(new Constraint[0]);
+    }
+
+    @Test
+    public void smallerNogoodCoversLarger() {
+        Constraint a = Constraint.label("a");
+        Constraint b = Constraint.label("b");
+
+        Nogoods nogoods = new Nogoods();
+        assertTrue(nogoods.learn(Map.of(a, Constraint.Status.TRUE)));
+        assertFalse(nogoods.learn(Map.of(a, Constraint.Status.TRUE, b, Constraint.Status.TRUE)));
+
+        assertTrue(nogoods.matches(Map.of(a, Constraint.Status.TRUE, b, Constraint.Status.FALSE)));
+        assertFalse(nogoods.matches(Map.of(a, Constraint.Status.FALSE)));
+        assertEquals(1, nogoods.size());
+    }
+
+    @Test
+    public void learningMatchesWithout() {
+        for (ConstraintMapperApplier.Type type : ConstraintMapperApplier.Type.values()) {
+            ConstraintTree plain = TestConstraints.solver(type).bind(puzzle()).solve();
+            ConstraintTree learned = TestConstraints.solver(type).learning(true).bind(puzzle()).solve();
+
+            assertFalse(plain.validBranches().isEmpty(), type.name());
+            assertEquals(TestConstraints.solutions(plain), TestConstraints.solutions(learned), type.name());
+            assertTrue(learned.nogoods().size() > 0, type.name());
+        }
+    }
+
+    @Test
+    public void unexplainedChangesAreNotDecisions() {
+        List<ConstraintMapper> mappers = new ArrayList<>(TestConstraints.mappers());
+        mappers.add(new SilentMapper());
+        ConstraintTree tree = new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers, ConstraintMapperApplier.Type.EXHAUSTIVE)))
+                .learning(true)
+                .bind(new TestConstraints.Choice("x", 2))
+                .solve();
+
+        assertEquals(2, tree.validBranches().size());
+        for (ConstraintBranch branch : tree.validBranches()) {
+            assertTrue(branch.constraints().containsKey(Constraint.label("seen")));
+            assertFalse(branch.decisions().containsKey(Constraint.label("seen")));
+            assertTrue(branch.decisions().containsKey(new TestConstraints.Choice("x", 2)));
+        }
+    }
+}
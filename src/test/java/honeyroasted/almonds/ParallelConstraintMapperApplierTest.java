@@ -0,0 +1,76 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelConstraintMapperApplierTest {
+
+    static class ThreadRecorder extends ConstraintMapper.Unary<TestConstraints.Assign> {
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, TestConstraints.Assign constraint, Constraint.Status status) {
+            this.threads.add(Thread.currentThread());
+        }
+    }
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(4, 3).toArray(new Constraint[0]);
+    }
+
+    @Test
+    public void matchesExhaustive() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ConstraintTree exhaustive = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solve();
+            for (boolean incremental : List.of(false, true)) {
+                ConstraintTree parallel = TestConstraints.solver(ConstraintMapperApplier.Type.PARALLEL).pool(pool)
+                        .incremental(incremental).bind(puzzle()).solve();
+
+                assertFalse(exhaustive.validBranches().isEmpty());
+                assertEquals(TestConstraints.solutions(exhaustive), TestConstraints.solutions(parallel));
+                assertEquals(exhaustive.numBranches(), parallel.numBranches());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void dispatchesOnSolverPool() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ThreadRecorder recorder = new ThreadRecorder();
+            List<ConstraintMapper> mappers = new ArrayList<>(TestConstraints.mappers());
+            mappers.add(recorder);
+            new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers, ConstraintMapperApplier.Type.PARALLEL)))
+                    .pool(pool).bind(puzzle()).solve();
+
+            assertTrue(recorder.threads.stream().anyMatch(thread -> thread != Thread.currentThread()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void dispatchesOnCommonPoolWithoutPool() {
+        ThreadRecorder recorder = new ThreadRecorder();
+        List<ConstraintMapper> mappers = new ArrayList<>(TestConstraints.mappers());
+        mappers.add(recorder);
+        new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers, ConstraintMapperApplier.Type.PARALLEL)))
+                .bind(puzzle()).solve();
+
+        assertTrue(recorder.threads.stream().anyMatch(thread -> thread != Thread.currentThread()));
+    }
+}
@@ -0,0 +1,95 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolutionIteratorTest {
+
+    //Only implements the whole-tree accept, so streaming goes through the default run
+    static class OpaqueApplier implements ConstraintMapperApplier {
+        private final ConstraintMapperApplier delegate = ConstraintMapperApplier.of(TestConstraints.mappers(), Type.EXHAUSTIVE);
+
+        @Override
+        public List<ConstraintMapper> mappers() {
+            return this.delegate.mappers();
+        }
+
+        @Override
+        public List<ConstraintMapper> flattened() {
+            return this.delegate.flattened();
+        }
+
+        @Override
+        public void accept(ConstraintBranch branch) {
+            this.delegate.accept(branch);
+        }
+
+        @Override
+        public void accept(ConstraintTree tree) {
+            this.delegate.accept(tree);
+        }
+    }
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(3, 3).toArray(new Constraint[0]);
+    }
+
+    private static Set<Set<Constraint>> solutions(List<ConstraintBranch> branches) {
+        return branches.stream().map(cb -> cb.constraints().keySet()).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void streamsEverySolution() {
+        ConstraintTree tree = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solve();
+        List<ConstraintBranch> streamed = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solveStream().toList();
+
+        assertEquals(tree.validBranches().size(), streamed.size());
+        assertEquals(TestConstraints.solutions(tree), solutions(streamed));
+    }
+
+    @Test
+    public void yieldsCopies() {
+        List<ConstraintBranch> streamed = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solveStream().toList();
+
+        assertFalse(streamed.isEmpty());
+        for (ConstraintBranch branch : streamed) {
+            assertEquals(Constraint.Status.TRUE, branch.status());
+            assertTrue(branch.parent().currentBranches().keySet().stream().noneMatch(cb -> cb == branch));
+        }
+    }
+
+    @Test
+    public void orderedStopsAtFirstSolution() {
+        List<ConstraintBranch> streamed = TestConstraints.solver(ConstraintMapperApplier.Type.ORDERED).bind(puzzle()).solveStream().toList();
+        assertEquals(1, streamed.size());
+    }
+
+    @Test
+    public void appliersWithoutStepsStillStream() {
+        ConstraintTree tree = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solve();
+        List<ConstraintBranch> streamed = new ConstraintSolver(List.of(new OpaqueApplier())).bind(puzzle()).solveStream().toList();
+
+        assertEquals(TestConstraints.solutions(tree), solutions(streamed));
+    }
+
+    @Test
+    public void reportsExhaustedBudget() {
+        SolutionIterator iterator = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle())
+                .budget(SolveBudget.unlimited().withMaxRounds(1)).solveIterator();
+        iterator.forEachRemaining(branch -> {});
+        assertEquals(Optional.of(SolveBudget.Exhaustion.ROUNDS), iterator.exhausted());
+
+        SolutionIterator unlimited = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).bind(puzzle()).solveIterator();
+        unlimited.forEachRemaining(branch -> {});
+        assertEquals(Optional.empty(), unlimited.exhausted());
+    }
+}
@@ -0,0 +1,59 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolveBudgetTest {
+
+    private static ConstraintTree solve(int maxBranches, Constraint... constraints) {
+        return TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE)
+                .budget(SolveBudget.unlimited().withMaxBranches(maxBranches))
+                .bind(constraints)
+                .solve();
+    }
+
+    @Test
+    public void divergenceStopsAtBranchLimit() {
+        ConstraintTree tree = solve(20, new TestConstraints.Choice("x", 1000));
+
+        assertEquals(Optional.of(SolveBudget.Exhaustion.BRANCHES), tree.exhausted());
+        assertTrue(tree.numBranches() <= 21, "built " + tree.numBranches() + " branches");
+        assertTrue(tree.numBranches() > 1);
+    }
+
+    @Test
+    public void nestedDivergenceStopsAtBranchLimit() {
+        //Both choices diverge the same branch in one round, so their product is built at once
+        ConstraintTree tree = solve(20, new TestConstraints.Choice("x", 100), new TestConstraints.Choice("y", 100));
+
+        assertEquals(Optional.of(SolveBudget.Exhaustion.BRANCHES), tree.exhausted());
+        assertTrue(tree.numBranches() <= 21, "built " + tree.numBranches() + " branches");
+        assertTrue(tree.numBranches() >= 1);
+        for (ConstraintBranch branch : tree.currentBranches().keySet()) {
+            //Every branch that was kept picked a value for both variables
+            assertEquals(2, branch.constraintsByType(TestConstraints.Assign.class).size());
+        }
+    }
+
+    @Test
+    public void withinLimitSolvesFully() {
+        ConstraintTree tree = solve(100, new TestConstraints.Choice("x", 5), new TestConstraints.Choice("y", 5));
+
+        assertEquals(Optional.empty(), tree.exhausted());
+        assertEquals(25, tree.validBranches().size());
+    }
+
+    @Test
+    public void productFitsExactLimit() {
+        //The product replaces the first choice's alternatives, so only the branches it adds are counted
+        ConstraintTree tree = solve(9, new TestConstraints.Choice("x", 3), new TestConstraints.Choice("y", 3));
+
+        assertEquals(Optional.empty(), tree.exhausted());
+        assertEquals(9, tree.validBranches().size());
+    }
+}
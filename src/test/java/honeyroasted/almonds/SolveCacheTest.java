@@ -0,0 +1,123 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolveCacheTest {
+
+    private static Constraint[] puzzle() {
+        return TestConstraints.puzzle(3, 3).toArray(new Constraint[0]);
+    }
+
+    @Test
+    public void hitsAreIndependentCopies() {
+        SolveCache cache = new SolveCache(4);
+        ConstraintSolver solver = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).cache(cache).bind(puzzle());
+
+        ConstraintTree first = solver.solve();
+        ConstraintTree second = solver.solve();
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertNotSame(first, second);
+        assertEquals(TestConstraints.solutions(first), TestConstraints.solutions(second));
+
+        //Writing to a returned tree and its branches never reaches the cached tree
+        second.validBranches().iterator().next().metadata().attach("touched");
+        second.extend(new TestConstraints.Choice("extra", 2));
+        first.validBranches().iterator().next().metadata().attach("touched");
+
+        ConstraintTree third = solver.solve();
+        assertEquals(TestConstraints.solutions(first), TestConstraints.solutions(third));
+        for (ConstraintBranch branch : third.currentBranches().keySet()) {
+            assertFalse(branch.metadata().has(String.class));
+        }
+    }
+
+    @Test
+    public void combiningComponentsLeavesCacheIntact() {
+        SolveCache cache = new SolveCache(8);
+        ConstraintSolver solver = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE).cache(cache).bind(puzzle());
+
+        ConstraintTree solved = solver.solve();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TestConstraints.solutions(solved), TestConstraints.solutions(solver.solveComponents().tree()));
+        }
+        assertEquals(TestConstraints.solutions(solved), TestConstraints.solutions(solver.solve()));
+    }
+
+    @Test
+    public void optionsAreKeyed() {
+        SolveCache cache = new SolveCache(8);
+        //Solvers only share cached trees when they share their appliers
+        List<ConstraintMapperApplier> appliers = List.of(ConstraintMapperApplier.of(TestConstraints.mappers(), ConstraintMapperApplier.Type.EXHAUSTIVE));
+        for (boolean learning : List.of(false, true)) {
+            for (boolean incremental : List.of(false, true)) {
+                ConstraintTree uncached = TestConstraints.solver(ConstraintMapperApplier.Type.EXHAUSTIVE)
+                        .learning(learning).incremental(incremental).bind(puzzle()).solve();
+                ConstraintTree cached = new ConstraintSolver(appliers).cache(cache)
+                        .learning(learning).incremental(incremental).bind(puzzle()).solve();
+
+                assertEquals(uncached.numBranches(), cached.numBranches());
+                assertEquals(learning, cached.learning());
+            }
+        }
+        assertEquals(4, cache.misses());
+        assertEquals(0, cache.hits());
+        assertTrue(cache.size() <= 8);
+    }
+
+    @Test
+    public void hitsTakeCallerSettings() {
+        SolveCache cache = new SolveCache(4);
+        List<ConstraintMapperApplier> appliers = List.of(ConstraintMapperApplier.of(TestConstraints.mappers(), ConstraintMapperApplier.Type.EXHAUSTIVE));
+        ForkJoinPool fillerPool = new ForkJoinPool(1);
+        ForkJoinPool callerPool = new ForkJoinPool(1);
+        try {
+            new ConstraintSolver(appliers).cache(cache).bind(puzzle())
+                    .budget(SolveBudget.unlimited()).instrumentation(new SolverMetrics())
+                    .pool(fillerPool).interner(new ConstraintInterner()).solve();
+
+            SolveBudget budget = SolveBudget.unlimited().withMaxRounds(1);
+            SolverMetrics metrics = new SolverMetrics();
+            ConstraintInterner interner = new ConstraintInterner();
+            ConstraintTree hit = new ConstraintSolver(appliers).cache(cache).bind(puzzle())
+                    .budget(budget).instrumentation(metrics).pool(callerPool).interner(interner).solve();
+
+            assertEquals(1, cache.hits());
+            assertSame(budget, hit.budget());
+            assertSame(metrics, hit.instrumentation());
+            assertSame(callerPool, hit.pool());
+            assertSame(interner, hit.interner());
+
+            //The caller's budget counts from the round the cached tree stopped at
+            assertTrue(hit.withinBudget());
+        } finally {
+            fillerPool.shutdown();
+            callerPool.shutdown();
+        }
+    }
+
+    @Test
+    public void bindingOrderIsKeyed() {
+        SolveCache cache = new SolveCache(4);
+        List<ConstraintMapperApplier> appliers = List.of(ConstraintMapperApplier.of(TestConstraints.mappers(), ConstraintMapperApplier.Type.EXHAUSTIVE));
+        List<Constraint> reversed = new ArrayList<>(List.of(puzzle()));
+        Collections.reverse(reversed);
+
+        new ConstraintSolver(appliers).cache(cache).bind(puzzle()).solve();
+        new ConstraintSolver(appliers).cache(cache).bind(reversed.toArray(new Constraint[0])).solve();
+        assertEquals(2, cache.misses());
+        assertEquals(0, cache.hits());
+    }
+}
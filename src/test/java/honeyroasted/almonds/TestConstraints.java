@@ -0,0 +1,122 @@
+package honeyroasted.almonds;
+
+import honeyroasted.almonds.applier.ConstraintMapperApplier;
+import honeyroasted.collect.property.PropertySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+final class TestConstraints {
+
+    private TestConstraints() {
+    }
+
+    static List<ConstraintMapper> mappers() {
+        return List.of(new ChoiceMapper(), new AssignMapper(), new ForbidMapper());
+    }
+
+    static ConstraintSolver solver(ConstraintMapperApplier.Type type) {
+        return new ConstraintSolver(List.of(ConstraintMapperApplier.of(mappers(), type)));
+    }
+
+    //Every variable picks one of domain values, each forbidden value cuts that alternative
+    static List<Constraint> puzzle(int vars, int domain) {
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < vars; i++) {
+            constraints.add(new Choice("v" + i, domain));
+            constraints.add(new Forbid("v" + i, i % domain));
+        }
+        return constraints;
+    }
+
+    static Set<Set<Constraint>> solutions(ConstraintTree tree) {
+        return tree.validBranches().stream().map(cb -> cb.constraints().keySet()).collect(Collectors.toSet());
+    }
+
+    static class Choice extends Constraint.Binary<String, Integer> {
+        public Choice(String variable, Integer domain) {
+            super(variable, domain);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " in 0.." + this.right();
+        }
+    }
+
+    static class Assign extends Constraint.Binary<String, Integer> {
+        public Assign(String variable, Integer value) {
+            super(variable, value);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " = " + this.right();
+        }
+    }
+
+    static class Forbid extends Constraint.Binary<String, Integer> {
+        public Forbid(String variable, Integer value) {
+            super(variable, value);
+        }
+
+        @Override
+        public String simpleName() {
+            return this.left() + " != " + this.right();
+        }
+    }
+
+    static class ChoiceMapper extends ConstraintMapper.Unary<Choice> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Choice constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Choice constraint, Constraint.Status status) {
+            List<Map<Constraint, Constraint.Status>> options = new ArrayList<>();
+            for (int i = 0; i < constraint.right(); i++) {
+                options.add(Map.of(new Assign(constraint.left(), i), Constraint.Status.UNKNOWN));
+            }
+            branch.set(constraint, Constraint.Status.TRUE);
+            branch.diverge(options);
+        }
+    }
+
+    static class AssignMapper extends ConstraintMapper.Unary<Assign> {
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign constraint, Constraint.Status status) {
+            return status == Constraint.Status.UNKNOWN;
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign constraint, Constraint.Status status) {
+            branch.set(constraint, Constraint.Status.TRUE);
+        }
+    }
+
+    static class ForbidMapper extends ConstraintMapper.Binary<Assign, Forbid> {
+        @Override
+        protected Object leftKey(Assign constraint) {
+            return constraint.left();
+        }
+
+        @Override
+        protected Object rightKey(Forbid constraint) {
+            return constraint.left();
+        }
+
+        @Override
+        protected boolean filter(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign leftConstraint, Constraint.Status leftStatus, Forbid rightConstraint, Constraint.Status rightStatus) {
+            return rightStatus.isUnknown() && leftConstraint.left().equals(rightConstraint.left());
+        }
+
+        @Override
+        protected void accept(PropertySet allContext, PropertySet branchContext, ConstraintBranch branch, Assign leftConstraint, Constraint.Status leftStatus, Forbid rightConstraint, Constraint.Status rightStatus) {
+            branch.set(rightConstraint, Constraint.Status.known(!leftConstraint.right().equals(rightConstraint.right())));
+        }
+    }
+}